@@ -0,0 +1,76 @@
+package org.employee.survey.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.parser.SurveyCSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Average age queries for each scope against parsed data, single ids and whole-scope batches
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AverageAgeBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"COMPANY", "DIVISION", "TEAM", "MANAGER"})
+    private AgeCalculator.Scope scope;
+
+    private AgeCalculator averageAgeCalculator;
+    private Optional<Integer> id;
+    private final LocalDate referenceDate = LocalDate.of(2020, 1, 1);
+
+    @Setup(Level.Trial)
+    public void parseCSV() throws IOException, MalformedCSVException {
+        Path csvFilePath = BenchmarkData.writeSurveyCSV(rows);
+        try {
+            SurveyCSVParser.SurveyCSVData surveyData = (SurveyCSVParser.SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(),
+                    SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get();
+            averageAgeCalculator = new SurveyAnalyzer(surveyData);
+            id = AgeCalculator.Scope.COMPANY == scope ? Optional.empty() : Optional.of(1);
+        }
+        finally {
+            Files.deleteIfExists(csvFilePath);
+        }
+    }
+
+    @Benchmark
+    public Period averageAge() throws AgeCalculator.AgeCalculatorException {
+        return averageAgeCalculator.getAverageAge(scope, id, referenceDate);
+    }
+
+    @Benchmark
+    public Map<Integer, Period> averageAges() {
+        return averageAgeCalculator.getAverageAges(scope, referenceDate);
+    }
+}
@@ -0,0 +1,31 @@
+package org.employee.survey.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.employee.survey.generator.SurveyCSVGenerator;
+
+/**
+ * Survey CSV files of a given size for benchmarks, seeded so every run sees the same data
+ *
+ */
+final class BenchmarkData {
+
+    private static final int EMPLOYEES_PER_MANAGER = 10;
+    private static final int MANAGERS_PER_TEAM = 5;
+    private static final int TEAMS_PER_DIVISION = 15;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Write a CSV of the given number of rows to a temporary file, the caller deletes it
+     */
+    static Path writeSurveyCSV(int rows) throws IOException {
+        Path csvFilePath = Files.createTempFile("survey-benchmark-" + rows + "-", ".csv");
+        int divisions = Math.max(1, rows / (EMPLOYEES_PER_MANAGER * MANAGERS_PER_TEAM * TEAMS_PER_DIVISION));
+        SurveyCSVGenerator.builder().seed(rows).rows(rows).fanOut(divisions, TEAMS_PER_DIVISION, MANAGERS_PER_TEAM).build().write(csvFilePath);
+        return csvFilePath;
+    }
+}
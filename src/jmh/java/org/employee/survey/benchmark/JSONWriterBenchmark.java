@@ -0,0 +1,77 @@
+package org.employee.survey.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.SurveyCSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JSON export of parsed data, streamed to a discarding stream and rendered to a String
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JSONWriterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"ORIGINAL", "BIRTHDATE"})
+    private SurveyCSVParser.SurveyCSVData.Employee.SortOrder order;
+
+    private JSONWriter writerOfJson;
+
+    @Setup(Level.Trial)
+    public void parseCSV() throws IOException, MalformedCSVException {
+        Path csvFilePath = BenchmarkData.writeSurveyCSV(rows);
+        try {
+            writerOfJson = new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile(), order, CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get());
+        }
+        finally {
+            Files.deleteIfExists(csvFilePath);
+        }
+    }
+
+    @Benchmark
+    public void writeStream(Blackhole blackhole) throws IOException {
+        writerOfJson.write(new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+
+    @Benchmark
+    public String writeString() throws IOException {
+        return writerOfJson.write();
+    }
+}
@@ -0,0 +1,78 @@
+package org.employee.survey.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.parser.SurveyCSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Sorted employee views of every manager, served from the cache and rebuilt after a change
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderedEmployeesBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"ID", "LASTNAME", "FIRSTNAME", "BIRTHDATE"})
+    private SurveyCSVParser.SurveyCSVData.Employee.SortOrder order;
+
+    @Param({"ASCENDING", "DESCENDING"})
+    private CSVData.SortDirection direction;
+
+    private final List<SurveyCSVParser.SurveyCSVData.Manager> managers = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void parseCSV() throws IOException, MalformedCSVException {
+        Path csvFilePath = BenchmarkData.writeSurveyCSV(rows);
+        try {
+            SurveyCSVParser.SurveyCSVData surveyData = (SurveyCSVParser.SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), order, direction, CSVParser.Ingestion.MAPPED).parse().get();
+            surveyData.getDivisions().values().forEach(division -> division.getTeams().values().forEach(team -> managers.addAll(team.getManagers().values())));
+        }
+        finally {
+            Files.deleteIfExists(csvFilePath);
+        }
+    }
+
+    @Benchmark
+    public void cachedViews(Blackhole blackhole) {
+        for (SurveyCSVParser.SurveyCSVData.Manager manager : managers)
+            blackhole.consume(manager.getOrderedEmployees());
+    }
+
+    @Benchmark
+    public void rebuiltViews(Blackhole blackhole) {
+        for (SurveyCSVParser.SurveyCSVData.Manager manager : managers) {
+            Map.Entry<Integer, SurveyCSVParser.SurveyCSVData.Employee> employee = manager.getEmployees().entrySet().iterator().next();
+            manager.addEmployee(employee.getKey(), employee.getValue());           // NOTE - Re-adding an employee invalidates the cached view
+            blackhole.consume(manager.getOrderedEmployees());
+        }
+    }
+}
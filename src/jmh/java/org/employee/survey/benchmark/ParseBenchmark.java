@@ -0,0 +1,67 @@
+package org.employee.survey.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.parser.SurveyCSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full parse of a CSV file for each sort order, direction and ingestion path
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"ORIGINAL", "ID", "LASTNAME", "FIRSTNAME", "BIRTHDATE"})
+    private SurveyCSVParser.SurveyCSVData.Employee.SortOrder order;
+
+    @Param({"ASCENDING", "DESCENDING"})
+    private CSVData.SortDirection direction;
+
+    @Param({"STREAMED", "MAPPED"})
+    private CSVParser.Ingestion ingestion;
+
+    private Path csvFilePath;
+
+    @Setup(Level.Trial)
+    public void writeCSV() throws IOException {
+        csvFilePath = BenchmarkData.writeSurveyCSV(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCSV() throws IOException {
+        Files.deleteIfExists(csvFilePath);
+    }
+
+    @Benchmark
+    public Optional<CSVData> parse() throws MalformedCSVException {
+        return CSVParser.createSurveyParser(csvFilePath.toFile(), order, direction, ingestion).parse();
+    }
+}
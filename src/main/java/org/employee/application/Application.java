@@ -1,9 +1,17 @@
 package org.employee.application;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Period;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.employee.survey.analysis.AgeCalculator;
 import org.employee.survey.analysis.AgeCalculator.AgeCalculatorException;
@@ -11,6 +19,7 @@ import org.employee.survey.analysis.SurveyAnalyzer;
 import org.employee.survey.csv.CSVData;
 import org.employee.survey.csv.CSVParser;
 import org.employee.survey.csv.Parser;
+import org.employee.survey.metrics.SurveyMetrics;
 import org.employee.survey.parser.SurveyCSVParser;
 import org.employee.survey.json.JSONWriter;
 
@@ -21,6 +30,9 @@ import org.employee.survey.json.JSONWriter;
  */
 class Application {
 
+    static final String SERVE_ARGUMENT = "SERVE";
+    static final String BATCH_ARGUMENT = "BATCH";
+
     /**
      * Main entry point
      * @param args
@@ -31,14 +43,30 @@ class Application {
             // Path to supplied CSV data file
             Path csvFilePath = Paths.get("data", "data.csv");
           
+            // Server mode keeps the data resident and answers queries over HTTP until the process is stopped
+            if (args.length > 0 && true == SERVE_ARGUMENT.equalsIgnoreCase(args[0])) {
+                serve(csvFilePath, args);
+                return;
+            }
+
+            // Batch mode parses once and answers a file of queries, results in the order asked
+            if (args.length > 0 && true == BATCH_ARGUMENT.equalsIgnoreCase(args[0])) {
+                batch(csvFilePath, args);
+                return;
+            }
+
             // Process command-line arguments for sort order and direction
             org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder employeeSortOrder = processSortOrder(args);
             org.employee.survey.csv.CSVData.SortDirection employeeSortDirection = processSortAscendingDescending(args);
 
-            // Create the parser
-            Parser csvParser = CSVParser.createSurveyParser(csvFilePath.toFile(), employeeSortOrder, employeeSortDirection);
+            // Publish pipeline metrics over JMX as they are gathered
+            SurveyMetrics.registerGlobal();
+
+            // Create the parser, an unchanged CSV loads from its binary snapshot, otherwise memory-mapped ingestion parses line-aligned chunks on all cores
+            Path snapshotFilePath = Paths.get("data", "data.snapshot");
+            Parser csvParser = CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), snapshotFilePath.toFile(), employeeSortOrder, employeeSortDirection);
 
-            long timeBeforeWorkMs = System.nanoTime();
+            long timeBeforeWorkNs = System.nanoTime();
 
             // Parse into object structure
             Optional<CSVData> csvDataObjectsOrNull = csvParser.parse();     
@@ -50,20 +78,18 @@ class Application {
                 // Create the writer
                 JSONWriter writerofJson = new JSONWriter(csvDataObjects);
 
-                // Write out objects as JSON
-                String jsonStringRepresentation = writerofJson.write();
-                Objects.requireNonNull(jsonStringRepresentation, "FAILED to output JSON");
+                System.out.println("Processed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timeBeforeWorkNs) + "ms");
 
-                System.out.println("Processed in " + (System.nanoTime() - timeBeforeWorkMs) + "ms");
-
-                // Dump JSON to console
+                // Stream JSON to console as objects are walked
                 System.out.println("JSON formatted survey data");
-                System.out.println(jsonStringRepresentation);                           // NOTE - Verify and pretty print JSON output at https://jsonlint.com/
+                writerofJson.write(System.out);                                         // NOTE - Verify and pretty print JSON output at https://jsonlint.com/
+                System.out.println();
 
                 // Check we have survey data
                 if (true == csvDataObjects instanceof SurveyCSVParser.SurveyCSVData) {
 
                     SurveyCSVParser.SurveyCSVData surveyData = (SurveyCSVParser.SurveyCSVData)csvDataObjects;
+                    System.out.println("Parse statistics: " + surveyData.getParseStatistics());
 
                     // Dump some sample object data to console
                     SurveyCSVParser.SurveyCSVData.Manager sampleManager = surveyData.getDivisions().get(1).getTeams().get(5).getManagers().get(1);
@@ -99,6 +125,12 @@ class Application {
                 System.out.println("FAILED to parse CSV data");
             }
 
+            // Machine-readable metrics summary to console, and to a file if one was given after sort order and direction
+            String metricsSummary = SurveyMetrics.global().getSummaryJSON();
+            System.out.println("Metrics: " + metricsSummary);
+            if (args.length > 2)
+                Files.write(Paths.get(args[2]), metricsSummary.getBytes(StandardCharsets.UTF_8));
+
             System.out.flush();
         }
         catch (Exception e) {
@@ -106,6 +138,49 @@ class Application {
         }
     }
 
+    private static void serve(Path csvFilePath, String[] args) throws Exception {
+
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : SurveyServer.DEFAULT_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 2 * Runtime.getRuntime().availableProcessors();
+
+        SurveyMetrics.registerGlobal();
+        Parser csvParser = CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), Paths.get("data", "data.snapshot").toFile(),
+                org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL, org.employee.survey.csv.CSVData.SortDirection.ASCENDING);
+
+        long timeBeforeLoadNs = System.nanoTime();
+        SurveyServer server = new SurveyServer(csvParser, port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Loaded in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timeBeforeLoadNs) + "ms, serving on port " + server.getPort() + " with " + threads + " threads");
+    }
+
+    private static void batch(Path csvFilePath, String[] args) throws Exception {
+
+        if (args.length < 3)
+            throw new IllegalArgumentException("Usage: BATCH <queries file> <results file> [threads] [sort order] [ASC/DESC]");
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String[] sortArgs = Arrays.copyOfRange(args, Math.min(4, args.length), args.length);
+        org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrder = processSortOrder(sortArgs);
+        org.employee.survey.csv.CSVData.SortDirection sortDirection = processSortAscendingDescending(sortArgs);
+
+        SurveyMetrics.registerGlobal();
+
+        // NOTE - Default order loads from the snapshot, other orders asked for by subtree queries are parsed from the CSV once each
+        SurveyBatch batch = new SurveyBatch((order, direction) -> order == sortOrder && direction == sortDirection
+                ? CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), Paths.get("data", "data.snapshot").toFile(), order, direction)
+                : CSVParser.createSurveyParser(csvFilePath.toFile(), order, direction, CSVParser.Ingestion.MAPPED), sortOrder, sortDirection);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (OutputStream results = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[2])), 1 << 16)) {
+            SurveyBatch.Summary summary = batch.run(Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8), results, executor, threads);
+            System.out.println("Batch of " + summary.getQueries() + " queries, " + summary.getErrors() + " failed, parsed in "
+                    + TimeUnit.NANOSECONDS.toMillis(summary.getParseNanos()) + "ms, answered in " + TimeUnit.NANOSECONDS.toMillis(summary.getQueryNanos()) + "ms on " + threads + " threads");
+        }
+        finally {
+            executor.shutdown();
+        }
+        System.out.println("Metrics: " + SurveyMetrics.global().getSummaryJSON());
+    }
+
     private static org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder processSortOrder(String[] args) {
 
     	org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrder = org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL;
@@ -0,0 +1,329 @@
+package org.employee.application;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.AgeDistribution;
+import org.employee.survey.analysis.CachingAgeCalculator;
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.metrics.SurveyMetrics;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Class running a file of survey queries against data parsed once, results are written in the order of the queries
+ *
+ * One query per line, blank lines and lines starting with # are skipped:
+ *
+ *   AGE COMPANY|DIVISION|TEAM|MANAGER [id] [yyyy-mm-dd]
+ *   DISTRIBUTION COMPANY|DIVISION|TEAM|MANAGER [id] [yyyy-mm-dd]
+ *   SUBTREE division [team [manager]] [ORIGINAL|ID|LASTNAME|FIRSTNAME|BIRTHDATE [ASC|DESC]]
+ *
+ * The file is parsed once before any query runs, in the default sort order or ORIGINAL if a subtree names it, the other sort orders named
+ * by subtrees are built from that data without reading the file again, other queries use the default one. Queries run on the
+ * executor at most a window ahead of the one being written, each result is one JSON line with the query, its time and its answer or error.
+ */
+final class SurveyBatch {
+
+    static final int WINDOW_PER_THREAD = 64;                    // NOTE - Bounds the results held while an earlier, slower query is awaited
+
+    private static final ObjectMapper RESULT_MAPPER = new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private final BiFunction<SurveyCSVData.Employee.SortOrder, CSVData.SortDirection, Parser> parsers;
+    private final SurveyCSVData.Employee.SortOrder defaultSortOrder;
+    private final CSVData.SortDirection defaultSortDirection;
+
+    /**
+     * @param parsers create the parser of the sort order and direction parsed, run once per batch
+     */
+    SurveyBatch(BiFunction<SurveyCSVData.Employee.SortOrder, CSVData.SortDirection, Parser> parsers, SurveyCSVData.Employee.SortOrder defaultSortOrder, CSVData.SortDirection defaultSortDirection) {
+        this.parsers = Objects.requireNonNull(parsers);
+        this.defaultSortOrder = defaultSortOrder;
+        this.defaultSortDirection = defaultSortDirection;
+    }
+
+    /**
+     * Parse the data needed, then run every query and write its result line to the output, which is flushed but left open
+     * @param threads of the executor, sizes the window of queries run ahead
+     * @exception MalformedCSVException if data needed by the queries can not be parsed, no query is run
+     */
+    Summary run(List<String> lines, OutputStream output, Executor executor, int threads) throws IOException, MalformedCSVException {
+        List<Query> queries = new ArrayList<>();
+        for (int line = 0; line < lines.size(); line++) {
+            String text = lines.get(line).trim();
+            if (false == text.isEmpty() && false == text.startsWith("#"))
+                queries.add(Query.of(line + 1, text, defaultSortOrder, defaultSortDirection));
+        }
+
+        Map<List<Object>, SurveyCSVData> surveyData = new LinkedHashMap<>();
+        surveyData.put(keyOf(defaultSortOrder, defaultSortDirection), null);
+        for (Query query : queries)
+            if (Query.Kind.SUBTREE == query.kind && null == query.error)
+                surveyData.put(keyOf(query.sortOrder, query.sortDirection), null);
+
+        // File order can not be recovered from a sorted tree, it is parsed ORIGINAL if any query needs it
+        long startNanos = System.nanoTime();
+        SurveyCSVData.Employee.SortOrder parsedSortOrder = true == surveyData.keySet().stream().anyMatch(key -> SurveyCSVData.Employee.SortOrder.ORIGINAL == key.get(0)) ? SurveyCSVData.Employee.SortOrder.ORIGINAL : defaultSortOrder;
+        SurveyCSVData parsedData = parse(parsedSortOrder, defaultSortDirection);
+        for (Map.Entry<List<Object>, SurveyCSVData> entry : surveyData.entrySet()) {
+            SurveyCSVData.Employee.SortOrder sortOrder = (SurveyCSVData.Employee.SortOrder)entry.getKey().get(0);
+            CSVData.SortDirection sortDirection = (CSVData.SortDirection)entry.getKey().get(1);
+            entry.setValue(sortOrder == parsedSortOrder && (SurveyCSVData.Employee.SortOrder.ORIGINAL == sortOrder || sortDirection == defaultSortDirection)
+                    ? parsedData : parsedData.sortedBy(sortOrder, sortDirection).freeze());
+        }
+        long parseNanos = System.nanoTime() - startNanos;
+
+        AgeCalculator ages = new CachingAgeCalculator(surveyData.get(keyOf(defaultSortOrder, defaultSortDirection)), new ResultCache());
+        int window = Math.max(1, threads) * WINDOW_PER_THREAD, errors = 0;
+        Deque<CompletableFuture<Result>> pending = new ArrayDeque<>(window);
+        for (Query query : queries) {
+            if (pending.size() >= window)
+                errors += write(pending.removeFirst().join(), output);
+            pending.addLast(CompletableFuture.supplyAsync(() -> query.run(surveyData, ages), executor));
+        }
+        while (false == pending.isEmpty())
+            errors += write(pending.removeFirst().join(), output);
+        output.flush();
+
+        return new Summary(queries.size(), errors, parseNanos, System.nanoTime() - startNanos - parseNanos);
+    }
+
+    private SurveyCSVData parse(SurveyCSVData.Employee.SortOrder sortOrder, CSVData.SortDirection sortDirection) throws MalformedCSVException {
+        Optional<CSVData> csvData = parsers.apply(sortOrder, sortDirection).parse();
+        if (false == csvData.isPresent() || false == csvData.get() instanceof SurveyCSVData)
+            throw new MalformedCSVException("FAILED to parse survey data sorted by " + sortOrder + " " + sortDirection);
+        return ((SurveyCSVData)csvData.get()).freeze();        // NOTE - Read by every query thread
+    }
+
+    /**
+     * @return 1 if the result is an error, 0 otherwise
+     */
+    private static int write(Result result, OutputStream output) throws IOException {
+        try (JsonGenerator generator = RESULT_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("line", result.query.line);
+            generator.writeStringField("query", result.query.text);
+            generator.writeNumberField("micros", result.nanos / 1000);
+            if (null != result.json) {
+                generator.writeFieldName("result");
+                generator.writeRawValue(new String(result.json, StandardCharsets.UTF_8));
+            }
+            else
+                generator.writeStringField("error", result.error);
+            generator.writeEndObject();
+        }
+        output.write('\n');
+        return null == result.json ? 1 : 0;
+    }
+
+    private static List<Object> keyOf(SurveyCSVData.Employee.SortOrder sortOrder, CSVData.SortDirection sortDirection) {
+        return Arrays.asList(sortOrder, sortDirection);
+    }
+
+    /**
+     * Class representing one line of the query file, a line that does not parse is kept and answers with its error
+     */
+    private static final class Query {
+
+        enum Kind {
+            AGE,
+            DISTRIBUTION,
+            SUBTREE
+        }
+
+        private final int line;
+        private final String text;
+        private Kind kind;
+        private String error;
+        private AgeCalculator.Scope scope;
+        private Optional<Integer> id = Optional.empty();
+        private LocalDate date = LocalDate.now();
+        private final List<Integer> path = new ArrayList<>();          // NOTE - Division, then team and manager if given
+        private SurveyCSVData.Employee.SortOrder sortOrder;
+        private CSVData.SortDirection sortDirection;
+
+        private Query(int line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+
+        static Query of(int line, String text, SurveyCSVData.Employee.SortOrder defaultSortOrder, CSVData.SortDirection defaultSortDirection) {
+            Query query = new Query(line, text);
+            String[] tokens = text.split("\\s+");
+            try {
+                query.kind = Arrays.stream(Kind.values()).filter(kind -> kind.name().equalsIgnoreCase(tokens[0])).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Query is one of " + Arrays.toString(Kind.values()) + ", not " + tokens[0]));
+                int token = 1;
+                if (Kind.SUBTREE == query.kind) {
+                    for (; token < tokens.length && query.path.size() < 3 && true == tokens[token].matches("-?\\d+"); token++)
+                        query.path.add(Integer.parseInt(tokens[token]));
+                    if (true == query.path.isEmpty())
+                        throw new IllegalArgumentException("A division is required");
+                    query.sortOrder = token < tokens.length ? SurveyCSVData.Employee.SortOrder.valueOf(tokens[token++].toUpperCase()) : defaultSortOrder;
+                    query.sortDirection = token < tokens.length ? directionOf(tokens[token++]) : defaultSortDirection;
+                }
+                else {
+                    if (token == tokens.length)
+                        throw new IllegalArgumentException("A scope is required, one of " + Arrays.toString(AgeCalculator.Scope.values()));
+                    query.scope = AgeCalculator.Scope.valueOf(tokens[token++].toUpperCase());
+                    if (AgeCalculator.Scope.COMPANY != query.scope && token < tokens.length)
+                        query.id = Optional.of(Integer.parseInt(tokens[token++]));
+                    if (token < tokens.length)
+                        query.date = LocalDate.parse(tokens[token++]);
+                }
+                if (token < tokens.length)
+                    throw new IllegalArgumentException("Unexpected " + tokens[token]);
+            }
+            catch (IllegalArgumentException | DateTimeParseException e) {
+                query.error = e.getMessage();
+            }
+            return query;
+        }
+
+        Result run(Map<List<Object>, SurveyCSVData> surveyData, AgeCalculator ages) {
+            long startNanos = System.nanoTime();
+            try {
+                if (null != error)
+                    return new Result(this, null, error, startNanos);
+                switch (kind) {
+                    case AGE: {
+                        Map<String, Object> json = scopeJson();
+                        json.put("averageAge", SurveyServer.periodOf(ages.getAverageAge(scope, id, date)));
+                        return new Result(this, RESULT_MAPPER.writeValueAsBytes(json), null, startNanos);
+                    }
+                    case DISTRIBUTION: {
+                        AgeDistribution distribution = ages.getAgeDistribution(scope, id, date);
+                        Map<String, Object> json = scopeJson();
+                        json.put("employees", distribution.getNumberOfEmployees());
+                        json.put("medianAge", SurveyServer.periodOf(distribution.getMedianAge()));
+                        json.put("p90Age", SurveyServer.periodOf(distribution.getP90Age()));
+                        json.put("ageBands", distribution.getAgeBands());
+                        return new Result(this, RESULT_MAPPER.writeValueAsBytes(json), null, startNanos);
+                    }
+                    default:
+                        return subtree(surveyData.get(keyOf(sortOrder, sortDirection)), startNanos);
+                }
+            }
+            catch (Exception e) {
+                return new Result(this, null, null == e.getMessage() ? e.toString() : e.getMessage(), startNanos);
+            }
+        }
+
+        private Result subtree(SurveyCSVData surveyData, long startNanos) throws IOException {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            SurveyCSVData.Division division = surveyData.getDivisions().get(path.get(0));
+            if (null == division)
+                return new Result(this, null, "No division " + path.get(0), startNanos);
+            if (1 == path.size()) {
+                JSONWriter.write(json, division);
+                return new Result(this, json.toByteArray(), null, startNanos);
+            }
+            SurveyCSVData.Team team = division.getTeams().get(path.get(1));
+            if (null == team)
+                return new Result(this, null, "No team " + path.get(1) + " in division " + path.get(0), startNanos);
+            if (2 == path.size()) {
+                JSONWriter.write(json, team);
+                return new Result(this, json.toByteArray(), null, startNanos);
+            }
+            SurveyCSVData.Manager manager = team.getManagers().get(path.get(2));
+            if (null == manager)
+                return new Result(this, null, "No manager " + path.get(2) + " in team " + path.get(1), startNanos);
+            JSONWriter.write(json, manager);
+            return new Result(this, json.toByteArray(), null, startNanos);
+        }
+
+        private Map<String, Object> scopeJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("scope", scope.name());
+            id.ifPresent(value -> json.put("id", value));
+            return json;
+        }
+
+        private static CSVData.SortDirection directionOf(String token) {
+            if (true == "ASC".equalsIgnoreCase(token))
+                return CSVData.SortDirection.ASCENDING;
+            if (true == "DESC".equalsIgnoreCase(token))
+                return CSVData.SortDirection.DESCENDING;
+            throw new IllegalArgumentException("Sort direction is ASC or DESC, not " + token);
+        }
+    }
+
+    /**
+     * Class representing the answer of one query, its JSON or its error, with the time it took
+     */
+    private static final class Result {
+
+        private final Query query;
+        private final byte[] json;
+        private final String error;
+        private final long nanos;
+
+        private Result(Query query, byte[] json, String error, long startNanos) {
+            this.query = query;
+            this.json = json;
+            this.error = error;
+            this.nanos = System.nanoTime() - startNanos;
+            SurveyMetrics.global().recordQuery("batch/" + (null == query.kind ? "invalid" : query.kind.name().toLowerCase()), startNanos);
+        }
+    }
+
+    /**
+     * Class representing the outcome of a batch
+     */
+    static final class Summary {
+
+        private final int queries;
+        private final int errors;
+        private final long parseNanos;
+        private final long queryNanos;
+
+        private Summary(int queries, int errors, long parseNanos, long queryNanos) {
+            this.queries = queries;
+            this.errors = errors;
+            this.parseNanos = parseNanos;
+            this.queryNanos = queryNanos;
+        }
+
+        int getQueries() {
+            return queries;
+        }
+        int getErrors() {
+            return errors;
+        }
+        long getParseNanos() {
+            return parseNanos;
+        }
+        long getQueryNanos() {
+            return queryNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "(queries='" + queries + "', errors='" + errors + "', parseMillis='" + parseNanos / 1_000_000 + "', queryMillis='" + queryNanos / 1_000_000 + "')";
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package org.employee.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.AgeDistribution;
+import org.employee.survey.analysis.CachingAgeCalculator;
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.json.CachingJSONWriter;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.metrics.SurveyMetrics;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.employee.survey.parser.SurveyDataHolder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Class answering survey queries over HTTP from data parsed once and kept resident
+ *
+ * Requests are served from an immutable holder of one frozen version of the data, its analyzers and an employee id index. A reload
+ * parses the next version in the background and swaps in a new holder once it is complete, readers in flight finish on the version
+ * they started with and are never blocked.
+ * Age answers and division JSON are kept in a bounded ResultCache shared by the versions, a replaced version's results are dropped.
+ * Requests run on a bounded pool, when its queue is full they are handed to one overload thread that only answers 503 with Retry-After,
+ * so the accepting thread never runs a request itself. Once that thread is backed up too, new connections are closed unanswered.
+ *
+ *   GET  /age?scope=COMPANY|DIVISION|TEAM|MANAGER[&id=n][&date=yyyy-mm-dd]
+ *   GET  /distribution?scope=...[&id=n][&date=yyyy-mm-dd]
+ *   GET  /subtree?division=n[&team=n[&manager=n]]
+ *   GET  /employee?id=n
+ *   POST /reload          202 at once, the new version is served when loaded
+ *   GET  /metrics
+ */
+final class SurveyServer implements AutoCloseable {
+
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final int OVERLOAD_QUEUE_CAPACITY = 256;
+
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> false);        // NOTE - Set on the overload thread only
+
+    private static final ObjectMapper RESPONSE_MAPPER = new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private final SurveyDataHolder surveyDataHolder;
+    private final AtomicReference<Resident> resident = new AtomicReference<>();
+    private final ResultCache resultCache = new ResultCache();
+    private final HttpServer httpServer;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor overload;
+
+    /**
+     * Parse the data and start serving it
+     * @param parser run again on every reload, e.g. a snapshot parser so an unchanged CSV reloads from its snapshot
+     * @param port to listen on, 0 for any free port
+     * @param threads serving requests
+     */
+    SurveyServer(Parser parser, int port, int threads) throws IOException, MalformedCSVException {
+        this(parser, port, threads, DEFAULT_QUEUE_CAPACITY, OVERLOAD_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity requests waiting for a thread before new ones are answered 503
+     * @param overloadCapacity requests waiting to be answered 503 before new connections are closed unanswered
+     */
+    SurveyServer(Parser parser, int port, int threads, int queueCapacity, int overloadCapacity) throws IOException, MalformedCSVException {
+        surveyDataHolder = new SurveyDataHolder(parser);
+        resident.set(new Resident(surveyDataHolder.getVersion(), resultCache));
+
+        overload = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(overloadCapacity),
+                runnable -> new Thread(() -> {
+                    SHEDDING.set(true);
+                    runnable.run();
+                }, "survey-server-overload"),
+                new ThreadPoolExecutor.AbortPolicy());          // NOTE - The HttpServer closes a connection whose exchange is rejected
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "survey-server-" + threadNumber.incrementAndGet()),
+                (runnable, pool) -> overload.execute(runnable));
+
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/age", handler("GET", this::age));
+        httpServer.createContext("/distribution", handler("GET", this::distribution));
+        httpServer.createContext("/subtree", handler("GET", this::subtree));
+        httpServer.createContext("/employee", handler("GET", this::employee));
+        httpServer.createContext("/reload", handler("POST", this::reload));
+        httpServer.createContext("/metrics", handler("GET", this::metrics));
+        httpServer.start();
+    }
+
+    int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    SurveyCSVData getSurveyData() {
+        return resident.get().surveyData;
+    }
+
+    ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+    ThreadPoolExecutor getOverloadExecutor() {
+        return overload;
+    }
+
+    /**
+     * Parse the next version in the background, its id index is built there too before it is served
+     * @return completed once the version is served, shared by reloads asked for meanwhile
+     */
+    CompletableFuture<SurveyDataHolder.Version> reload() {
+        return surveyDataHolder.reload().thenApply(version -> {
+            Resident next = new Resident(version, resultCache);
+            for (Resident served = resident.get(); served.version.getNumber() < version.getNumber(); served = resident.get()) {
+                if (true == resident.compareAndSet(served, next)) {
+                    served.invalidate();
+                    break;
+                }
+            }
+            return version;
+        });
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdown();
+        overload.shutdown();
+        surveyDataHolder.close();
+    }
+
+    private void age(HttpExchange exchange, Map<String, String> query) throws IOException, AgeCalculator.AgeCalculatorException {
+        AgeCalculator.Scope scope = scopeOf(query);
+        Optional<Integer> id = optionalIntOf(query, "id");
+        Period averageAge = resident.get().ages.getAverageAge(scope, id, dateOf(query));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("scope", scope.name());
+        id.ifPresent(value -> response.put("id", value));
+        response.put("averageAge", periodOf(averageAge));
+        respond(exchange, 200, response);
+    }
+
+    private void distribution(HttpExchange exchange, Map<String, String> query) throws IOException, AgeCalculator.AgeCalculatorException {
+        AgeCalculator.Scope scope = scopeOf(query);
+        Optional<Integer> id = optionalIntOf(query, "id");
+        AgeDistribution distribution = resident.get().ages.getAgeDistribution(scope, id, dateOf(query));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("scope", scope.name());
+        id.ifPresent(value -> response.put("id", value));
+        response.put("employees", distribution.getNumberOfEmployees());
+        response.put("medianAge", periodOf(distribution.getMedianAge()));
+        response.put("p90Age", periodOf(distribution.getP90Age()));
+        response.put("ageBands", distribution.getAgeBands());
+        respond(exchange, 200, response);
+    }
+
+    private void subtree(HttpExchange exchange, Map<String, String> query) throws IOException {
+        Resident served = resident.get();
+        SurveyCSVData.Division division = served.surveyData.getDivisions().get(intOf(query, "division"));
+        if (null == division) {
+            respondError(exchange, 404, "No division " + query.get("division"));
+            return;
+        }
+        if (false == query.containsKey("team")) {
+            respondWith(exchange, output -> served.divisions.writeDivision(output, division.getId()));
+            return;
+        }
+        SurveyCSVData.Team team = division.getTeams().get(intOf(query, "team"));
+        if (null == team) {
+            respondError(exchange, 404, "No team " + query.get("team") + " in division " + query.get("division"));
+            return;
+        }
+        if (false == query.containsKey("manager")) {
+            respondWith(exchange, output -> JSONWriter.write(output, team));
+            return;
+        }
+        SurveyCSVData.Manager manager = team.getManagers().get(intOf(query, "manager"));
+        if (null == manager) {
+            respondError(exchange, 404, "No manager " + query.get("manager") + " in team " + query.get("team"));
+            return;
+        }
+        respondWith(exchange, output -> JSONWriter.write(output, manager));
+    }
+
+    private void employee(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int id = intOf(query, "id");
+        List<Map<String, Object>> employees = resident.get().findEmployees(id);
+        if (true == employees.isEmpty()) {
+            respondError(exchange, 404, "No employee " + id);
+            return;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("employees", employees);
+        respond(exchange, 200, response);
+    }
+
+    private void reload(HttpExchange exchange, Map<String, String> query) throws IOException {
+        reload();
+        SurveyDataHolder.Version served = resident.get().version;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("servedVersion", served.getNumber());
+        response.put("employees", served.getData().getAgeRollup().getNumberOfEmployees());
+        response.put("loadMillis", TimeUnit.NANOSECONDS.toMillis(served.getLoadNanos()));
+        respond(exchange, 202, response);
+    }
+
+    private void metrics(HttpExchange exchange, Map<String, String> query) throws IOException {
+        byte[] body = SurveyMetrics.global().getSummaryJSON().getBytes(StandardCharsets.UTF_8);
+        respondWith(exchange, output -> output.write(body));
+    }
+
+    /**
+     * Route one method to the endpoint, bad parameters answer 400 and every request is recorded as query server/path,
+     * or server/busy if shed and server/failed if it failed once its status was sent
+     */
+    private HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            long startNanos = System.nanoTime();
+            String path = exchange.getHttpContext().getPath();
+            String query = true == SHEDDING.get() ? "server/busy" : "server" + path;
+            try {
+                if (true == SHEDDING.get()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respondError(exchange, 503, "Server is busy, retry later");
+                }
+                else if (false == method.equalsIgnoreCase(exchange.getRequestMethod()))
+                    respondError(exchange, 405, "Use " + method + " for " + path);
+                else
+                    endpoint.handle(exchange, queryOf(exchange.getRequestURI()));
+            }
+            catch (IllegalArgumentException | DateTimeParseException | AgeCalculator.AgeCalculatorException e) {
+                if (false == respondErrorUnlessSent(exchange, 400, e.getMessage()))
+                    query = "server/failed";
+            }
+            catch (Exception e) {
+                if (false == respondErrorUnlessSent(exchange, 500, e.toString()))
+                    query = "server/failed";
+            }
+            finally {
+                exchange.close();
+                SurveyMetrics.global().recordQuery(query, startNanos);
+            }
+        };
+    }
+
+    private static Map<String, String> queryOf(URI uri) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = uri.getRawQuery();
+        if (null == rawQuery || true == rawQuery.isEmpty())
+            return query;
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0)
+                query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+        }
+        return query;
+    }
+
+    private static AgeCalculator.Scope scopeOf(Map<String, String> query) {
+        String scope = query.get("scope");
+        if (null == scope)
+            throw new IllegalArgumentException("Parameter scope is required, one of " + Arrays.toString(AgeCalculator.Scope.values()));
+        return AgeCalculator.Scope.valueOf(scope.toUpperCase());
+    }
+
+    private static LocalDate dateOf(Map<String, String> query) {
+        String date = query.get("date");
+        return null == date ? LocalDate.now() : LocalDate.parse(date);
+    }
+
+    private static Optional<Integer> optionalIntOf(Map<String, String> query, String name) {
+        return query.containsKey(name) ? Optional.of(intOf(query, name)) : Optional.empty();
+    }
+
+    private static int intOf(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (null == value)
+            throw new IllegalArgumentException("Parameter " + name + " is required");
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    static Map<String, Integer> periodOf(Period period) {
+        Map<String, Integer> json = new LinkedHashMap<>();
+        json.put("years", period.getYears());
+        json.put("months", period.getMonths());
+        json.put("days", period.getDays());
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object response) throws IOException {
+        byte[] body = RESPONSE_MAPPER.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", message);
+        respond(exchange, status, response);
+    }
+
+    /**
+     * Answer with the error unless a status was sent already, e.g. a streamed body failed part way, the exchange is then only closed
+     * @return false if the status was sent already
+     */
+    private static boolean respondErrorUnlessSent(HttpExchange exchange, int status, String message) throws IOException {
+        if (-1 != exchange.getResponseCode())                   // NOTE - -1 until the response headers are sent
+            return false;
+        respondError(exchange, status, message);
+        return true;
+    }
+
+    /**
+     * Stream a 200 response of unknown length, chunked, as the body is written
+     */
+    private static void respondWith(HttpExchange exchange, BodyWriter bodyWriter) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        bodyWriter.write(exchange.getResponseBody());
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange, Map<String, String> query) throws Exception;
+    }
+
+    private interface BodyWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    /**
+     * One version of the survey data with what is derived from it, never changed once built
+     */
+    private static final class Resident {
+
+        private final SurveyDataHolder.Version version;
+        private final SurveyCSVData surveyData;
+        private final CachingAgeCalculator ages;
+        private final CachingJSONWriter divisions;
+
+        // NOTE - Employee id in the high half, manager ordinal in the low half, sorted, 8 bytes per employee rather than a map entry each
+        private final long[] employeeKeys;
+        private final List<ManagerPath> managers = new ArrayList<>();
+
+        private Resident(SurveyDataHolder.Version version, ResultCache resultCache) {
+            this.version = version;
+            this.surveyData = version.getData();
+            this.ages = new CachingAgeCalculator(surveyData, resultCache);
+            this.divisions = new CachingJSONWriter(surveyData, resultCache);
+
+            long[] keys = new long[(int)surveyData.getAgeRollup().getNumberOfEmployees()];
+            int employees = 0;
+            for (Map.Entry<Integer, SurveyCSVData.Division> division : surveyData.getDivisions().entrySet())
+                for (Map.Entry<Integer, SurveyCSVData.Team> team : division.getValue().getTeams().entrySet())
+                    for (Map.Entry<Integer, SurveyCSVData.Manager> manager : team.getValue().getManagers().entrySet()) {
+                        int ordinal = managers.size();
+                        managers.add(new ManagerPath(division.getKey(), team.getKey(), manager.getKey(), manager.getValue()));
+                        for (Integer employeeId : manager.getValue().getEmployees().keySet())
+                            keys[employees++] = ((long)employeeId << 32) | ordinal;
+                    }
+            employeeKeys = Arrays.copyOf(keys, employees);
+            Arrays.sort(employeeKeys);
+        }
+
+        private void invalidate() {
+            ages.invalidate();
+            divisions.invalidate();
+        }
+
+        /**
+         * @return every employee with the id and where it sits, in the order the managers were walked
+         */
+        private List<Map<String, Object>> findEmployees(int id) {
+            List<Map<String, Object>> found = new ArrayList<>();
+            int index = Arrays.binarySearch(employeeKeys, (long)id << 32);
+            for (int i = index >= 0 ? index : -index - 1; i < employeeKeys.length && (int)(employeeKeys[i] >> 32) == id; i++) {
+                ManagerPath path = managers.get((int)employeeKeys[i]);
+                SurveyCSVData.Employee employee = path.manager.getEmployees().get(id);
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("divisionId", path.divisionId);
+                json.put("teamId", path.teamId);
+                json.put("managerId", path.managerId);
+                json.put("id", employee.getId());
+                json.put("firstName", employee.getFirstName());
+                json.put("lastName", employee.getLastName());
+                json.put("birthdate", employee.getBirthdate());
+                found.add(json);
+            }
+            return found;
+        }
+    }
+
+    private static final class ManagerPath {
+        private final Integer divisionId;
+        private final Integer teamId;
+        private final Integer managerId;
+        private final SurveyCSVData.Manager manager;
+
+        private ManagerPath(Integer divisionId, Integer teamId, Integer managerId, SurveyCSVData.Manager manager) {
+            this.divisionId = divisionId;
+            this.teamId = teamId;
+            this.managerId = managerId;
+            this.manager = manager;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.employee.survey.analysis;
 
+import java.time.LocalDate;
 import java.time.Period;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -16,7 +18,57 @@ public interface AgeCalculator {
      * @return Period of time showing the average age
      * @exception  AgeCalculatorException if id is not present for non-company scope
      */
-    Period getAverageAge(Scope scope, Optional<Integer> id) throws AgeCalculatorException;
+    default Period getAverageAge(Scope scope, Optional<Integer> id) throws AgeCalculatorException {
+        return getAverageAge(scope, id, LocalDate.now());
+    }
+
+    /**
+     * Calculate average age of employees within a specified scope on a given date
+     * @param scope enum value
+     * @param id of division, team or manager, can be not present for company scope
+     * @param referenceDate on which ages are measured
+     * @return Period of time showing the average age
+     * @exception  AgeCalculatorException if id is not present for non-company scope
+     */
+    Period getAverageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculatorException;
+
+    /**
+     * Calculate average ages of every division, team or manager in one pass over the survey data
+     * @param scope enum value, company scope gives a single entry keyed by COMPANY_ID
+     * @param referenceDate on which ages are measured
+     * @return map from id to Period of time showing the average age, in the order ids are first met in the data
+     */
+    Map<Integer, Period> getAverageAges(Scope scope, LocalDate referenceDate);
+
+    /**
+     * Calculate average ages of every id at every scope in one pass over the survey data
+     * @param referenceDate on which ages are measured
+     * @return map from scope to the averages of that scope, as returned by getAverageAges
+     */
+    Map<Scope, Map<Integer, Period>> getAllAverageAges(LocalDate referenceDate);
+
+    /**
+     * Spread of ages of employees within a specified scope, with median, percentiles and age bands
+     * @param scope enum value
+     * @param id of division, team or manager, can be not present for company scope
+     * @return distribution of ages today
+     * @exception  AgeCalculatorException if id is not present for non-company scope
+     */
+    default AgeDistribution getAgeDistribution(Scope scope, Optional<Integer> id) throws AgeCalculatorException {
+        return getAgeDistribution(scope, id, LocalDate.now());
+    }
+
+    /**
+     * Spread of ages of employees within a specified scope on a given date, from summaries kept per scope so no employees are sorted per query
+     * @param scope enum value
+     * @param id of division, team or manager, can be not present for company scope
+     * @param referenceDate on which ages are measured
+     * @return distribution of ages, empty if no scope has the id
+     * @exception  AgeCalculatorException if id is not present for non-company scope
+     */
+    AgeDistribution getAgeDistribution(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculatorException;
+
+    static final Integer COMPANY_ID = 0;        // NOTE - Key of the single company scope entry in batch results
 
     public enum Scope {
         COMPANY,
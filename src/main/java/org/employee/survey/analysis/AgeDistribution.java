@@ -0,0 +1,87 @@
+package org.employee.survey.analysis;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.employee.survey.parser.BirthdateSketch;
+
+/**
+ * Class representing the spread of employee ages in a scope on a reference date
+ *
+ * Backed by the birthdate sketch of the scope, so percentiles and bands are exact and each costs a few binary searches.
+ */
+public final class AgeDistribution {
+
+    public static final int AGE_BAND_YEARS = 10;
+
+    private final BirthdateSketch sketch;
+    private final LocalDate referenceDate;
+
+    AgeDistribution(BirthdateSketch sketch, LocalDate referenceDate) {
+        this.sketch = sketch;
+        this.referenceDate = referenceDate;
+    }
+
+    public long getNumberOfEmployees() {
+        return sketch.getCount();
+    }
+
+    /**
+     * @return distinct birth days in the backing sketch, which bounds its size
+     */
+    int getDistinctBirthdates() {
+        return sketch.getDistinctBirthdates();
+    }
+
+    public Period getMedianAge() {
+        return getAgeAtPercentile(50);
+    }
+    public Period getP90Age() {
+        return getAgeAtPercentile(90);
+    }
+
+    /**
+     * Age by the nearest-rank method, the percentile of employees at or below it in age
+     * @param percentile from 0 to 100
+     * @return Period of time from birthdate to reference date, zero for a scope without employees
+     */
+    public Period getAgeAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile " + percentile + " is out of range");
+        long employees = sketch.getCount();
+        if (0 == employees)
+            return Period.ZERO;
+
+        long rankByAge = Math.max(1, (long)Math.ceil(percentile / 100 * employees));
+        long rankByBirthdate = employees - rankByAge + 1;               // NOTE - Youngest are born last
+        return Period.between(LocalDate.ofEpochDay(sketch.epochDayAtRank(rankByBirthdate)), referenceDate);
+    }
+
+    /**
+     * @return employees per band of AGE_BAND_YEARS whole years, keyed by the lowest age of the band, from the youngest band to the oldest
+     */
+    public Map<Integer, Long> getAgeBands() {
+        long employees = sketch.getCount();
+        if (0 == employees)
+            return Collections.emptyMap();
+
+        int youngest = Period.between(LocalDate.ofEpochDay(sketch.epochDayAtRank(employees)), referenceDate).getYears();
+        int oldest = Period.between(LocalDate.ofEpochDay(sketch.epochDayAtRank(1)), referenceDate).getYears();
+        Map<Integer, Long> bands = new LinkedHashMap<>();
+        for (int band = Math.floorDiv(youngest, AGE_BAND_YEARS) * AGE_BAND_YEARS; band <= oldest; band += AGE_BAND_YEARS) {
+            // NOTE - Age in whole years is at least n exactly when born on or before the reference date n years earlier
+            long bornAfter = referenceDate.minusYears(band + AGE_BAND_YEARS).toEpochDay();
+            long bornOnOrBefore = referenceDate.minusYears(band).toEpochDay();
+            bands.put(band, sketch.countBornBetween(bornAfter + 1, bornOnOrBefore + 1));
+        }
+        return bands;
+    }
+
+    @Override
+    public String toString() {
+        return "(employees='" + getNumberOfEmployees() + "', median='" + getMedianAge() + "', p90='" + getP90Age() + "', bands='" + getAgeBands() + "')";
+    }
+}
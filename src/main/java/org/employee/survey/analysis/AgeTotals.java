@@ -0,0 +1,46 @@
+package org.employee.survey.analysis;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Birthdate sums and employee counts per scope and id, gathered in a single traversal for batch average age queries
+ *
+ */
+final class AgeTotals {
+
+    private final Map<AgeCalculator.Scope, Map<Integer, long[]>> totalsOfScopes = new EnumMap<>(AgeCalculator.Scope.class);
+
+    AgeTotals(AgeCalculator.Scope... scopes) {
+        for (AgeCalculator.Scope scope : scopes)
+            totalsOfScopes.put(scope, new LinkedHashMap<>());
+    }
+
+    boolean includes(AgeCalculator.Scope scope) {
+        return totalsOfScopes.containsKey(scope);
+    }
+
+    void add(AgeCalculator.Scope scope, Integer id, long sumOfBirthdateEpochDays, long numberOfEmployees) {
+        Map<Integer, long[]> totals = totalsOfScopes.get(scope);
+        if (null != totals) {
+            long[] total = totals.computeIfAbsent(id, k -> new long[2]);
+            total[0] += sumOfBirthdateEpochDays;
+            total[1] += numberOfEmployees;
+        }
+    }
+
+    Map<Integer, Period> averageAges(AgeCalculator.Scope scope, LocalDate referenceDate) {
+        Map<Integer, Period> averageAges = new LinkedHashMap<>();
+        totalsOfScopes.get(scope).forEach((id, total) -> averageAges.put(id, SurveyAnalyzer.averageAgeOf(total[0], total[1], referenceDate)));
+        return averageAges;
+    }
+
+    Map<AgeCalculator.Scope, Map<Integer, Period>> averageAges(LocalDate referenceDate) {
+        Map<AgeCalculator.Scope, Map<Integer, Period>> averageAgesOfScopes = new EnumMap<>(AgeCalculator.Scope.class);
+        totalsOfScopes.keySet().forEach(scope -> averageAgesOfScopes.put(scope, averageAges(scope, referenceDate)));
+        return averageAgesOfScopes;
+    }
+}
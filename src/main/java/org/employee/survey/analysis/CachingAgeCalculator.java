@@ -0,0 +1,106 @@
+package org.employee.survey.analysis;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.parser.ColumnarSurveyData;
+import org.employee.survey.parser.SurveyCSVParser;
+
+/**
+ * Class answering age queries from a ResultCache in front of an analyzer, keyed by data version, query and reference date
+ *
+ * Rows appended to the data change its revision so earlier results are no longer hit, rebuilt data needs a new calculator
+ * and the old one can be invalidated.
+ * One cache can be shared by many calculators, results of each are kept apart.
+ */
+public final class CachingAgeCalculator implements AgeCalculator {
+
+    static final long ESTIMATED_RESULT_BYTES = 64;             // NOTE - Rough size of a Period, or of a distribution without its sketch
+    static final long ESTIMATED_SKETCH_BYTES_PER_BIRTHDATE = 12;    // NOTE - An int epoch day and a long cumulative count
+
+    private final AgeCalculator calculator;
+    private final LongSupplier versionOfData;
+    private final ResultCache cache;
+    private final Object source = new Object();                 // NOTE - Token in keys, so cached results do not keep the data reachable
+
+    public CachingAgeCalculator(SurveyCSVParser.SurveyCSVData surveyData, ResultCache cache) {
+        this(new SurveyAnalyzer(surveyData), surveyData::getRevision, cache);
+    }
+
+    public CachingAgeCalculator(ColumnarSurveyData surveyData, ResultCache cache) {
+        this(new ColumnarSurveyAnalyzer(surveyData), () -> 0, cache);       // NOTE - Columnar data never changes once built
+    }
+
+    private CachingAgeCalculator(AgeCalculator calculator, LongSupplier versionOfData, ResultCache cache) {
+        this.calculator = calculator;
+        this.versionOfData = versionOfData;
+        this.cache = Objects.requireNonNull(cache);
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Drop every cached result of this calculator, e.g. once its data is replaced by a rebuilt version
+     */
+    public void invalidate() {
+        cache.invalidate(source);
+    }
+
+    @Override
+    public Period getAverageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculatorException {
+        if (Scope.COMPANY != scope && (null == id || false == id.isPresent()))
+            throw new AgeCalculatorException("For non-COMPANY scope an identifier is required");
+        return cache.get(keyOf(SurveyAnalyzer.averageAgeQuery(scope), idOf(scope, id), referenceDate), result -> ESTIMATED_RESULT_BYTES,
+                () -> calculator.getAverageAge(scope, id, referenceDate));
+    }
+
+    @Override
+    public AgeDistribution getAgeDistribution(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculatorException {
+        if (Scope.COMPANY != scope && (null == id || false == id.isPresent()))
+            throw new AgeCalculatorException("For non-COMPANY scope an identifier is required");
+        return cache.get(keyOf(SurveyAnalyzer.ageDistributionQuery(scope), idOf(scope, id), referenceDate),
+                distribution -> ESTIMATED_RESULT_BYTES + ESTIMATED_SKETCH_BYTES_PER_BIRTHDATE * distribution.getDistinctBirthdates(),
+                () -> calculator.getAgeDistribution(scope, id, referenceDate));
+    }
+
+    /**
+     * @return averages from the cache, unmodifiable as the map is shared by every caller
+     */
+    @Override
+    public Map<Integer, Period> getAverageAges(Scope scope, LocalDate referenceDate) {
+        return cache.get(keyOf(SurveyAnalyzer.averageAgesQuery(scope), null, referenceDate), averages -> ESTIMATED_RESULT_BYTES * (1 + averages.size()),
+                () -> Collections.unmodifiableMap(calculator.getAverageAges(scope, referenceDate)));
+    }
+
+    /**
+     * @return averages from the cache, unmodifiable as the maps are shared by every caller
+     */
+    @Override
+    public Map<Scope, Map<Integer, Period>> getAllAverageAges(LocalDate referenceDate) {
+        return cache.get(keyOf(SurveyAnalyzer.ALL_AVERAGE_AGES_QUERY, null, referenceDate),
+                averages -> ESTIMATED_RESULT_BYTES * (1 + averages.values().stream().mapToLong(Map::size).sum()),
+                () -> {
+                    Map<Scope, Map<Integer, Period>> averages = new EnumMap<>(Scope.class);
+                    calculator.getAllAverageAges(referenceDate).forEach((scope, averagesOfScope) -> averages.put(scope, Collections.unmodifiableMap(averagesOfScope)));
+                    return Collections.unmodifiableMap(averages);
+                });
+    }
+
+    private ResultCache.Key keyOf(String query, Integer id, LocalDate referenceDate) {
+        return new ResultCache.Key(source, versionOfData.getAsLong(), query, Arrays.asList(id, referenceDate));
+    }
+
+    private static Integer idOf(Scope scope, Optional<Integer> id) {
+        return Scope.COMPANY == scope ? null : id.get();
+    }
+}
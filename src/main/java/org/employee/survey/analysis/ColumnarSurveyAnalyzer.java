@@ -0,0 +1,174 @@
+package org.employee.survey.analysis;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.employee.survey.metrics.SurveyMetrics;
+import org.employee.survey.parser.BirthdateSketch;
+import org.employee.survey.parser.ColumnarSurveyData;
+
+/**
+ * Class implementing average age calculations on columnar survey data, each scope is a scan over contiguous employee ranges
+ *
+ */
+public final class ColumnarSurveyAnalyzer implements AgeCalculator {
+
+    private final ColumnarSurveyData surveyData;
+
+    public ColumnarSurveyAnalyzer(ColumnarSurveyData surveyData) {
+        this.surveyData = surveyData;
+    }
+
+    @Override
+    public Period getAverageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
+        long startNanos = System.nanoTime();
+        try {
+            return averageAge(scope, id, referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(SurveyAnalyzer.averageAgeQuery(scope), startNanos);
+        }
+    }
+
+    private Period averageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
+
+        if (AgeCalculator.Scope.COMPANY != scope && (null == id || false == id.isPresent()))
+            throw new AgeCalculator.AgeCalculatorException("For non-COMPANY scope an identifier is required");
+
+        long totalBirthdateEpochDays = 0, totalEmployeesInScope = 0;
+        switch (scope) {
+
+            default:
+            //case COMPANY:
+                totalBirthdateEpochDays = surveyData.sumOfBirthdateEpochDays(0, surveyData.getEmployeeCount());
+                totalEmployeesInScope = surveyData.getEmployeeCount();
+                break;
+            case DIVISION:
+                for (int d = 0; d < surveyData.getDivisionCount(); d++) {
+                    if (surveyData.getDivisionId(d) == id.get()) {
+                        int from = surveyData.getFirstEmployeeOf(surveyData.getFirstManagerOf(surveyData.getFirstTeamOf(d)));
+                        int to = surveyData.getFirstEmployeeOf(surveyData.getFirstManagerOf(surveyData.getEndTeamOf(d)));
+                        totalBirthdateEpochDays += surveyData.sumOfBirthdateEpochDays(from, to);
+                        totalEmployeesInScope += to - from;
+                    }
+                }
+                break;
+            case TEAM:
+                for (int t = 0; t < surveyData.getTeamCount(); t++) {
+                    if (surveyData.getTeamId(t) == id.get()) {
+                        int from = surveyData.getFirstEmployeeOf(surveyData.getFirstManagerOf(t));
+                        int to = surveyData.getFirstEmployeeOf(surveyData.getEndManagerOf(t));
+                        totalBirthdateEpochDays += surveyData.sumOfBirthdateEpochDays(from, to);
+                        totalEmployeesInScope += to - from;
+                    }
+                }
+                break;
+            case MANAGER:
+                for (int m = 0; m < surveyData.getManagerCount(); m++) {
+                    if (surveyData.getManagerId(m) == id.get()) {
+                        int from = surveyData.getFirstEmployeeOf(m);
+                        int to = surveyData.getEndEmployeeOf(m);
+                        totalBirthdateEpochDays += surveyData.sumOfBirthdateEpochDays(from, to);
+                        totalEmployeesInScope += to - from;
+                    }
+                }
+                break;
+        }
+
+        return SurveyAnalyzer.averageAgeOf(totalBirthdateEpochDays, totalEmployeesInScope, referenceDate);
+    }
+
+    @Override
+    public AgeDistribution getAgeDistribution(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
+        long startNanos = System.nanoTime();
+        try {
+            if (AgeCalculator.Scope.COMPANY != scope && (null == id || false == id.isPresent()))
+                throw new AgeCalculator.AgeCalculatorException("For non-COMPANY scope an identifier is required");
+
+            List<BirthdateSketch> sketches = new ArrayList<>();
+            switch (scope) {
+
+                default:
+                //case COMPANY:
+                    sketches.add(surveyData.getBirthdateSketch());
+                    break;
+                case DIVISION:
+                    for (int d = 0; d < surveyData.getDivisionCount(); d++) {
+                        if (surveyData.getDivisionId(d) == id.get())
+                            sketches.add(surveyData.getDivisionBirthdateSketch(d));
+                    }
+                    break;
+                case TEAM:
+                    for (int t = 0; t < surveyData.getTeamCount(); t++) {
+                        if (surveyData.getTeamId(t) == id.get())
+                            sketches.add(surveyData.getTeamBirthdateSketch(t));
+                    }
+                    break;
+                case MANAGER:
+                    for (int m = 0; m < surveyData.getManagerCount(); m++) {
+                        if (surveyData.getManagerId(m) == id.get())
+                            sketches.add(surveyData.getManagerBirthdateSketch(m));
+                    }
+                    break;
+            }
+            return new AgeDistribution(BirthdateSketch.merge(sketches), referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(SurveyAnalyzer.ageDistributionQuery(scope), startNanos);
+        }
+    }
+
+    @Override
+    public Map<Integer, Period> getAverageAges(Scope scope, LocalDate referenceDate) {
+        long startNanos = System.nanoTime();
+        try {
+            return totalsOf(scope).averageAges(scope, referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(SurveyAnalyzer.averageAgesQuery(scope), startNanos);
+        }
+    }
+
+    @Override
+    public Map<Scope, Map<Integer, Period>> getAllAverageAges(LocalDate referenceDate) {
+        long startNanos = System.nanoTime();
+        try {
+            return totalsOf(Scope.values()).averageAges(referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(SurveyAnalyzer.ALL_AVERAGE_AGES_QUERY, startNanos);
+        }
+    }
+
+    /**
+     * Gather the requested scopes in one sequential scan of the birthdate column, manager sums roll up into teams and divisions
+     */
+    private AgeTotals totalsOf(Scope... scopes) {
+        AgeTotals totals = new AgeTotals(scopes);
+        long companySum = 0;
+        for (int d = 0; d < surveyData.getDivisionCount(); d++) {
+            long divisionSum = 0, divisionCount = 0;
+            for (int t = surveyData.getFirstTeamOf(d); t < surveyData.getEndTeamOf(d); t++) {
+                long teamSum = 0, teamCount = 0;
+                for (int m = surveyData.getFirstManagerOf(t); m < surveyData.getEndManagerOf(t); m++) {
+                    long managerSum = surveyData.sumOfBirthdateEpochDays(surveyData.getFirstEmployeeOf(m), surveyData.getEndEmployeeOf(m));
+                    long managerCount = surveyData.getEndEmployeeOf(m) - surveyData.getFirstEmployeeOf(m);
+                    totals.add(Scope.MANAGER, surveyData.getManagerId(m), managerSum, managerCount);
+                    teamSum += managerSum;
+                    teamCount += managerCount;
+                }
+                totals.add(Scope.TEAM, surveyData.getTeamId(t), teamSum, teamCount);
+                divisionSum += teamSum;
+                divisionCount += teamCount;
+            }
+            totals.add(Scope.DIVISION, surveyData.getDivisionId(d), divisionSum, divisionCount);
+            companySum += divisionSum;
+        }
+        totals.add(Scope.COMPANY, AgeCalculator.COMPANY_ID, companySum, surveyData.getEmployeeCount());
+        return totals;
+    }
+}
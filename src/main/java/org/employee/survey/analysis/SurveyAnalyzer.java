@@ -1,19 +1,27 @@
 package org.employee.survey.analysis;
 
-import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Period;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import org.employee.survey.metrics.SurveyMetrics;
+import org.employee.survey.parser.BirthdateSketch;
 import org.employee.survey.parser.SurveyCSVParser;
 
 /**
  * Class implementing average age calculations on survey data  
  *
+ * Averages come from the birthdate rollups maintained on each node while the data is built, so no employee is visited per query.
  */
 public final class SurveyAnalyzer implements AgeCalculator {
 
+    static final String ALL_AVERAGE_AGES_QUERY = "allAverageAges";          // NOTE - Query names of the latency histograms in SurveyMetrics
+    private static final String[] AVERAGE_AGE_QUERIES = queryNames("averageAge.");
+    private static final String[] AVERAGE_AGES_QUERIES = queryNames("averageAges.");
+    private static final String[] AGE_DISTRIBUTION_QUERIES = queryNames("ageDistribution.");
+
     private final SurveyCSVParser.SurveyCSVData surveyData;
 
     public SurveyAnalyzer(SurveyCSVParser.SurveyCSVData surveyData) {
@@ -21,75 +29,156 @@ public final class SurveyAnalyzer implements AgeCalculator {
     }
 
     @Override
-    public Period getAverageAge(Scope scope, Optional<Integer> id) throws AgeCalculator.AgeCalculatorException {
+    public Period getAverageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
+        long startNanos = System.nanoTime();
+        try {
+            return averageAge(scope, id, referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(averageAgeQuery(scope), startNanos);
+        }
+    }
+
+    private Period averageAge(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
 
         if (AgeCalculator.Scope.COMPANY != scope && (null == id || false == id.isPresent()))
             throw new AgeCalculator.AgeCalculatorException("For non-COMPANY scope an identifier is required");
 
-        long totalDaysAgeOfEmployeesInScope, totalEmployeesInScope;     
+        long totalBirthdateEpochDays = 0, totalEmployeesInScope = 0;
         switch (scope) {
 
             default:    
             //case COMPANY:
-                totalDaysAgeOfEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .mapToLong(e -> Duration.between(e.getBirthdateDateType().atStartOfDay(), LocalDate.now().atStartOfDay()).toDays()).sum();
-                totalEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .count();
+                totalBirthdateEpochDays = surveyData.getAgeRollup().getSumOfBirthdateEpochDays();
+                totalEmployeesInScope = surveyData.getAgeRollup().getNumberOfEmployees();
                 break;
             case DIVISION:
-                totalDaysAgeOfEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .filter(d -> Objects.equals(d.getId(), id.get()))
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .mapToLong(e -> Duration.between(e.getBirthdateDateType().atStartOfDay(), LocalDate.now().atStartOfDay()).toDays()).sum();
-                totalEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .filter(d -> Objects.equals(d.getId(), id.get()))
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .count();
+                SurveyCSVParser.SurveyCSVData.Division division = surveyData.getDivisions().get(id.get());
+                if (null != division) {
+                    totalBirthdateEpochDays = division.getAgeRollup().getSumOfBirthdateEpochDays();
+                    totalEmployeesInScope = division.getAgeRollup().getNumberOfEmployees();
+                }
                 break;
             case TEAM:
-                totalDaysAgeOfEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .filter(t -> Objects.equals(t.getId(), id.get()))
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .mapToLong(e -> Duration.between(e.getBirthdateDateType().atStartOfDay(), LocalDate.now().atStartOfDay()).toDays()).sum();
-                totalEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .filter(t -> Objects.equals(t.getId(), id.get()))
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .count();
+                for (SurveyCSVParser.SurveyCSVData.Team team : surveyData.getTeamsWithId(id.get())) {
+                    totalBirthdateEpochDays += team.getAgeRollup().getSumOfBirthdateEpochDays();
+                    totalEmployeesInScope += team.getAgeRollup().getNumberOfEmployees();
+                }
                 break;
             case MANAGER:
-                totalDaysAgeOfEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .filter(m -> Objects.equals(m.getId(), id.get()))
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .mapToLong(e -> Duration.between(e.getBirthdateDateType().atStartOfDay(), LocalDate.now().atStartOfDay()).toDays()).sum();
-                totalEmployeesInScope = surveyData.getDivisions().values().parallelStream()
-                        .flatMap(d -> d.getTeams().values().parallelStream())
-                        .flatMap(t -> t.getManagers().values().parallelStream())
-                        .filter(m -> Objects.equals(m.getId(), id.get()))
-                        .flatMap(m -> m.getEmployees().values().parallelStream())
-                        .count();
+                for (SurveyCSVParser.SurveyCSVData.Manager manager : surveyData.getManagersWithId(id.get())) {
+                    totalBirthdateEpochDays += manager.getAgeRollup().getSumOfBirthdateEpochDays();
+                    totalEmployeesInScope += manager.getAgeRollup().getNumberOfEmployees();
+                }
                 break;
         }
 
+        return averageAgeOf(totalBirthdateEpochDays, totalEmployeesInScope, referenceDate);
+    }
+
+    @Override
+    public AgeDistribution getAgeDistribution(Scope scope, Optional<Integer> id, LocalDate referenceDate) throws AgeCalculator.AgeCalculatorException {
+        long startNanos = System.nanoTime();
+        try {
+            if (AgeCalculator.Scope.COMPANY != scope && (null == id || false == id.isPresent()))
+                throw new AgeCalculator.AgeCalculatorException("For non-COMPANY scope an identifier is required");
+
+            BirthdateSketch sketch;
+            switch (scope) {
+
+                default:
+                //case COMPANY:
+                    sketch = surveyData.getBirthdateSketch();
+                    break;
+                case DIVISION:
+                    SurveyCSVParser.SurveyCSVData.Division division = surveyData.getDivisions().get(id.get());
+                    sketch = null != division ? division.getBirthdateSketch() : BirthdateSketch.EMPTY;
+                    break;
+                case TEAM:
+                    sketch = BirthdateSketch.merge(surveyData.getTeamsWithId(id.get()).stream().map(SurveyCSVParser.SurveyCSVData.Team::getBirthdateSketch).collect(Collectors.toList()));
+                    break;
+                case MANAGER:
+                    sketch = BirthdateSketch.merge(surveyData.getManagersWithId(id.get()).stream().map(SurveyCSVParser.SurveyCSVData.Manager::getBirthdateSketch).collect(Collectors.toList()));
+                    break;
+            }
+            return new AgeDistribution(sketch, referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(ageDistributionQuery(scope), startNanos);
+        }
+    }
+
+    @Override
+    public Map<Integer, Period> getAverageAges(Scope scope, LocalDate referenceDate) {
+        long startNanos = System.nanoTime();
+        try {
+            return totalsOf(scope).averageAges(scope, referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(averageAgesQuery(scope), startNanos);
+        }
+    }
+
+    @Override
+    public Map<Scope, Map<Integer, Period>> getAllAverageAges(LocalDate referenceDate) {
+        long startNanos = System.nanoTime();
+        try {
+            return totalsOf(Scope.values()).averageAges(referenceDate);
+        }
+        finally {
+            SurveyMetrics.global().recordQuery(ALL_AVERAGE_AGES_QUERY, startNanos);
+        }
+    }
+
+    /**
+     * Gather rollups of the requested scopes in one pass over divisions, teams and managers, employees are never visited
+     */
+    private AgeTotals totalsOf(Scope... scopes) {
+        AgeTotals totals = new AgeTotals(scopes);
+        totals.add(Scope.COMPANY, AgeCalculator.COMPANY_ID, surveyData.getAgeRollup().getSumOfBirthdateEpochDays(), surveyData.getAgeRollup().getNumberOfEmployees());
+        if (totals.includes(Scope.DIVISION) || totals.includes(Scope.TEAM) || totals.includes(Scope.MANAGER)) {
+            for (SurveyCSVParser.SurveyCSVData.Division division : surveyData.getDivisions().values()) {
+                totals.add(Scope.DIVISION, division.getId(), division.getAgeRollup().getSumOfBirthdateEpochDays(), division.getAgeRollup().getNumberOfEmployees());
+                for (SurveyCSVParser.SurveyCSVData.Team team : division.getTeams().values()) {
+                    totals.add(Scope.TEAM, team.getId(), team.getAgeRollup().getSumOfBirthdateEpochDays(), team.getAgeRollup().getNumberOfEmployees());
+                    if (totals.includes(Scope.MANAGER)) {
+                        for (SurveyCSVParser.SurveyCSVData.Manager manager : team.getManagers().values())
+                            totals.add(Scope.MANAGER, manager.getId(), manager.getAgeRollup().getSumOfBirthdateEpochDays(), manager.getAgeRollup().getNumberOfEmployees());
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Average age from a sum of birthdates, equal to the floored mean of each employee's age in days on the reference date
+     */
+    static Period averageAgeOf(long totalBirthdateEpochDays, long totalEmployeesInScope, LocalDate referenceDate) {
         long averageAgeDays = 0;
-        if (totalEmployeesInScope > 0)
+        if (totalEmployeesInScope > 0) {
+            long totalDaysAgeOfEmployeesInScope = totalEmployeesInScope * referenceDate.toEpochDay() - totalBirthdateEpochDays;
             averageAgeDays = (long)Math.floor(totalDaysAgeOfEmployeesInScope / totalEmployeesInScope);      // NOTE - Some rounding down here to nearest day over all employees in scope
-        Period averageAge = Period.between(LocalDate.now(), LocalDate.now().plusDays(averageAgeDays));
+        }
+        Period averageAge = Period.between(referenceDate, referenceDate.plusDays(averageAgeDays));
         return averageAge;
     }
+
+    static String averageAgeQuery(Scope scope) {
+        return AVERAGE_AGE_QUERIES[scope.ordinal()];
+    }
+    static String averageAgesQuery(Scope scope) {
+        return AVERAGE_AGES_QUERIES[scope.ordinal()];
+    }
+
+    static String ageDistributionQuery(Scope scope) {
+        return AGE_DISTRIBUTION_QUERIES[scope.ordinal()];
+    }
+
+    private static String[] queryNames(String prefix) {
+        String[] names = new String[Scope.values().length];
+        for (Scope scope : Scope.values())
+            names[scope.ordinal()] = prefix + scope.name();
+        return names;
+    }
 }
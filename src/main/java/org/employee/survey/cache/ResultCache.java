@@ -0,0 +1,192 @@
+package org.employee.survey.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import org.employee.survey.metrics.SurveyMetrics;
+
+/**
+ * Bounded cache of query results, least recently used entries are evicted once the estimated size of all entries exceeds the limit
+ *
+ * Keys carry the version of the data a result was computed from, so results of changed or rebuilt data are never hit and simply age out.
+ * Lookups take a short lock, results are computed outside it, two threads missing the same key may both compute it and the last one is kept.
+ * Hits, misses and evictions are counted here and in the global SurveyMetrics.
+ */
+public final class ResultCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);        // NOTE - Access order, eldest is least recently used
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResultCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes limit of the estimated size of all results held, a single larger result is computed but not held
+     */
+    public ResultCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Cache size " + maxBytes + " is negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param estimatedBytes of a computed result, the size it is held at, used for eviction only
+     * @return the cached result for the key, otherwise the result computed now and cached
+     */
+    public <V, E extends Exception> V get(Key key, ToLongFunction<? super V> estimatedBytes, Loader<V, E> loader) throws E {
+        Objects.requireNonNull(key);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (null != entry) {
+                hits.increment();
+                SurveyMetrics.global().add(SurveyMetrics.Counter.RESULT_CACHE_HITS, 1);
+                @SuppressWarnings("unchecked")
+                V value = (V)entry.value;
+                return value;
+            }
+        }
+        misses.increment();
+        SurveyMetrics.global().add(SurveyMetrics.Counter.RESULT_CACHE_MISSES, 1);
+
+        V value = loader.load();
+        if (null != value) {
+            long bytesOfValue = estimatedBytes.applyAsLong(value);
+            if (bytesOfValue <= maxBytes)
+                put(key, new Entry(value, bytesOfValue));
+        }
+        return value;
+    }
+
+    /**
+     * Drop every result of the source, e.g. once its data is replaced by a rebuilt version
+     */
+    public void invalidate(Object source) {
+        synchronized (entries) {
+            for (Iterator<Map.Entry<Key, Entry>> entry = entries.entrySet().iterator(); entry.hasNext(); ) {
+                Map.Entry<Key, Entry> next = entry.next();
+                if (next.getKey().source == source) {
+                    bytes -= next.getValue().bytes;
+                    entry.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+    public long getMisses() {
+        return misses.sum();
+    }
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(hits='" + getHits() + "', misses='" + getMisses() + "', evictions='" + getEvictions() + "', entries='" + getEntries() + "', bytes='" + getBytes() + "')";
+    }
+
+    private void put(Key key, Entry entry) {
+        long evicted = 0;
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            bytes += entry.bytes - (null == previous ? 0 : previous.bytes);
+            for (Iterator<Entry> eldest = entries.values().iterator(); bytes > maxBytes && eldest.hasNext(); evicted++) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        }
+        if (evicted > 0) {
+            evictions.add(evicted);
+            SurveyMetrics.global().add(SurveyMetrics.Counter.RESULT_CACHE_EVICTIONS, evicted);
+        }
+    }
+
+    /**
+     * Computes a result on a miss
+     */
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    /**
+     * Identity of a result, the data source and its version, the query and its argument, e.g. a reference date
+     */
+    public static final class Key {
+
+        private final Object source;
+        private final long version;
+        private final String query;
+        private final Object argument;
+
+        /**
+         * @param source identity of the data, compared by reference so a rebuilt source never shares results, best a small token as keys keep it reachable
+         * @param version of the source, differs whenever results from it may be stale
+         * @param argument of the query, compared by equals, can be null
+         */
+        public Key(Object source, long version, String query, Object argument) {
+            this.source = Objects.requireNonNull(source);
+            this.version = version;
+            this.query = Objects.requireNonNull(query);
+            this.argument = argument;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            if (false == other instanceof Key)
+                return false;
+            Key key = (Key)other;
+            return source == key.source && version == key.version && query.equals(key.query) && Objects.equals(argument, key.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((System.identityHashCode(source) * 31 + Long.hashCode(version)) * 31 + query.hashCode()) * 31 + Objects.hashCode(argument);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long bytes;
+
+        private Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.employee.survey.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+
+/**
+ * Tokenizer working directly over the bytes of a (memory-mapped) CSV region
+ *
+ * Lines are split in place, fields are only decoded when asked for, so numeric and date fields never become Strings.
+ * As with StringTokenizer over the streamed lines, empty fields are skipped, so a line is a row or not whichever way the file is read.
+ * Fields past the maximum are ignored.
+ */
+public final class CSVByteTokenizer {
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final ByteBuffer buffer;
+    private final byte separator;
+    private final int limit;
+
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+    private int fieldCount;
+
+    private int position;
+    private int lineStart;
+    private byte[] scratch = new byte[64];
+
+    /**
+     * @param buffer bytes to tokenize, from its position to its limit, expected to end on a line boundary
+     * @param separator of fields, must be a single byte character
+     * @param maximumFields number of leading fields recorded per line
+     */
+    public CSVByteTokenizer(ByteBuffer buffer, char separator, int maximumFields) {
+        this.buffer = buffer;
+        this.separator = (byte)separator;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+        this.fieldStarts = new int[maximumFields];
+        this.fieldEnds = new int[maximumFields];
+    }
+
+    /**
+     * Advance to the next non-blank line and split it into fields
+     * @return false once the buffer is exhausted
+     */
+    public boolean nextLine() {
+        while (position < limit) {
+            int lineStart = position;
+            int lineEnd = lineStart;
+            while (lineEnd < limit && NEW_LINE != buffer.get(lineEnd))
+                lineEnd++;
+            position = lineEnd + 1;
+
+            if (lineEnd > lineStart && CARRIAGE_RETURN == buffer.get(lineEnd - 1))
+                lineEnd--;
+            if (lineEnd > lineStart) {
+                splitFields(lineStart, lineEnd);
+                this.lineStart = lineStart;
+                return true;
+            }
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return index in the buffer of the first byte of the current line
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Continue from an index of the buffer, e.g. the start of a line recorded earlier, the next line read starts there
+     */
+    public void seek(int position) {
+        if (position < 0 || position > limit)
+            throw new IndexOutOfBoundsException("Position " + position + " is outside the buffer");
+        this.position = position;
+    }
+
+    /**
+     * Decode a field as a decimal integer, without creating a String
+     * @exception NumberFormatException if the field is not a valid int
+     */
+    public int intField(int index) {
+        int from = fieldStart(index), to = fieldEnds[index];
+        if (from == to)
+            throw new NumberFormatException("Empty integer field " + index);
+
+        boolean negative = false;
+        byte first = buffer.get(from);
+        if ('-' == first || '+' == first) {
+            negative = '-' == first;
+            if (++from == to)
+                throw new NumberFormatException("Sign without digits in field " + index);
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("Invalid digit in integer field " + index);
+            value = value * 10 + digit;
+            if (value > (long)Integer.MAX_VALUE + 1)
+                throw new NumberFormatException("Integer field " + index + " out of range");
+        }
+        if (negative)
+            value = -value;
+        if (value > Integer.MAX_VALUE)
+            throw new NumberFormatException("Integer field " + index + " out of range");
+        return (int)value;
+    }
+
+    /**
+     * Decode a field of the form yyyy-M-d straight to a day count since 1970-01-01
+     * @exception DateTimeException if the field is not a valid date
+     */
+    public int epochDayField(int index) {
+        return CSVDates.decodeEpochDay(buffer, fieldStart(index), fieldEnds[index]);
+    }
+
+    /**
+     * @return text of a date field with leading zeros, which encode would not give back, null for the usual yyyy-M-d without allocating
+     */
+    public String paddedDateField(int index) {
+        return CSVDates.isPadded(buffer, fieldStart(index), fieldEnds[index]) ? stringField(index) : null;
+    }
+
+    /**
+     * Decode a field as UTF-8 text, the only accessor that allocates besides padded dates
+     */
+    public String stringField(int index) {
+        int from = fieldStart(index), length = fieldEnds[index] - from;
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        for (int i = 0; i < length; i++)
+            scratch[i] = buffer.get(from + i);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a field through a pool, repeated ASCII values are matched in place and never allocate
+     */
+    public String stringField(int index, CSVStringPool pool) {
+        return pool.intern(buffer, fieldStart(index), fieldEnds[index]);
+    }
+
+    private int fieldStart(int index) {
+        if (index >= fieldCount)
+            throw new IndexOutOfBoundsException("Field " + index + " not present on line");
+        return fieldStarts[index];
+    }
+
+    private void splitFields(int lineStart, int lineEnd) {
+        fieldCount = 0;
+        int fieldStart = lineStart;
+        for (int i = lineStart; i <= lineEnd && fieldCount < fieldStarts.length; i++) {
+            if (i == lineEnd || separator == buffer.get(i)) {
+                if (i > fieldStart) {                   // NOTE - Separators in a row, or at either end of the line, delimit no field
+                    fieldStarts[fieldCount] = fieldStart;
+                    fieldEnds[fieldCount++] = i;
+                }
+                fieldStart = i + 1;
+            }
+        }
+    }
+}
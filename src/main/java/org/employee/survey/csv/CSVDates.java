@@ -0,0 +1,167 @@
+package org.employee.survey.csv;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+
+/**
+ * Hand-rolled conversion between yyyy-M-d dates and day counts since 1970-01-01
+ *
+ * Replaces DateTimeFormatter on the per-row path, decoding reads the characters or bytes in place and allocates nothing.
+ * Years are four digits from 0001, months and days one or two digits, and the day must exist in that month.
+ */
+public final class CSVDates {
+
+    private static final int DAYS_0000_TO_1970 = 719528;
+    private static final int DAYS_PER_400_YEARS = 146097;
+
+    private CSVDates() {
+    }
+
+    /**
+     * @exception DateTimeException if the text is not a valid yyyy-M-d date
+     */
+    public static int decodeEpochDay(CharSequence text) {
+        return decodeEpochDay(text, 0, text.length());
+    }
+
+    /**
+     * Decode text[from, to) as a yyyy-M-d date
+     * @exception DateTimeException if the characters are not a valid date
+     */
+    public static int decodeEpochDay(CharSequence text, int from, int to) {
+        int year = 0, month = 0, day = 0;
+        int part = 0, digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if ('-' == c && part < 2 && digits >= (0 == part ? 4 : 1)) {
+                part++;
+                digits = 0;
+            }
+            else if (c >= '0' && c <= '9' && digits < (0 == part ? 4 : 2)) {
+                if (0 == part)
+                    year = year * 10 + (c - '0');
+                else if (1 == part)
+                    month = month * 10 + (c - '0');
+                else
+                    day = day * 10 + (c - '0');
+                digits++;
+            }
+            else
+                throw new DateTimeException("Invalid date '" + text.subSequence(from, to) + "', expected yyyy-M-d");
+        }
+        if (2 != part || 0 == digits)
+            throw new DateTimeException("Invalid date '" + text.subSequence(from, to) + "', expected yyyy-M-d");
+        return epochDayOf(year, month, day);
+    }
+
+    /**
+     * Decode bytes[from, to) as an ASCII yyyy-M-d date, the buffer position is not used or changed
+     * @exception DateTimeException if the bytes are not a valid date
+     */
+    public static int decodeEpochDay(ByteBuffer bytes, int from, int to) {
+        int year = 0, month = 0, day = 0;
+        int part = 0, digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = bytes.get(i);
+            if ('-' == b && part < 2 && digits >= (0 == part ? 4 : 1)) {
+                part++;
+                digits = 0;
+            }
+            else if (b >= '0' && b <= '9' && digits < (0 == part ? 4 : 2)) {
+                if (0 == part)
+                    year = year * 10 + (b - '0');
+                else if (1 == part)
+                    month = month * 10 + (b - '0');
+                else
+                    day = day * 10 + (b - '0');
+                digits++;
+            }
+            else
+                throw new DateTimeException("Invalid date at byte " + i + ", expected yyyy-M-d");
+        }
+        if (2 != part || 0 == digits)
+            throw new DateTimeException("Invalid date ending at byte " + to + ", expected yyyy-M-d");
+        return epochDayOf(year, month, day);
+    }
+
+    /**
+     * @return true if a year, month or day of the yyyy-M-d text has a leading zero, so encode would not give the same text back
+     */
+    public static boolean isPadded(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if ('0' == text.charAt(i) && (0 == i || '-' == text.charAt(i - 1)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a year, month or day of the yyyy-M-d bytes[from, to) has a leading zero, the buffer position is not used or changed
+     */
+    public static boolean isPadded(ByteBuffer bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ('0' == bytes.get(i) && (from == i || '-' == bytes.get(i - 1)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Day count since 1970-01-01 of a validated calendar date, the same arithmetic as LocalDate.toEpochDay
+     * @exception DateTimeException if the year, month or day is out of range
+     */
+    public static int epochDayOf(int year, int month, int day) {
+        if (year < 1 || year > 9999)
+            throw new DateTimeException("Invalid year " + year);
+        if (month < 1 || month > 12)
+            throw new DateTimeException("Invalid month " + month + " in year " + year);
+        if (day < 1 || day > lengthOfMonth(year, month))
+            throw new DateTimeException("Invalid day " + day + " in " + year + "-" + month);
+
+        int total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (false == isLeapYear(year))
+                total--;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Render a day count as yyyy-M-d without padding, matching the CSV input format
+     */
+    public static String encode(int epochDay) {
+        // NOTE - Civil from days over 400 year eras whose years start on March 1st
+        int days = epochDay + DAYS_0000_TO_1970 - 60;
+        int era = Math.floorDiv(days, DAYS_PER_400_YEARS);
+        int dayOfEra = days - era * DAYS_PER_400_YEARS;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return new StringBuilder(10).append(year).append('-').append(month).append('-').append(day).toString();
+    }
+
+    private static boolean isLeapYear(int year) {
+        return 0 == (year & 3) && (0 != year % 100 || 0 == year % 400);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package org.employee.survey.csv;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.*;
-
+import org.employee.survey.parser.ColumnarSurveyCSVParser;
+import org.employee.survey.parser.LazySurveyCSVParser;
+import org.employee.survey.parser.SnapshotSurveyCSVParser;
 import org.employee.survey.parser.SurveyCSVParser;
 import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
 
@@ -17,12 +28,13 @@ import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
  */
 public class CSVParser {
 
+    private static final long MAPPED_CHUNK_BYTES_MAX = 64L << 20;
+    private static final long MAPPED_CHUNK_BYTES_MIN = 1L << 20;
+
     private final File csvFile;
     private final short minimumFieldsPerLine;
     private final String seperatorOfFields;
 
-    private List<String> linesOfCSVFile;
-
     protected CSVParser(File csvFile, short minimumFieldsPerLine, String seperatorOfFields) {
         this.csvFile = csvFile;
         this.minimumFieldsPerLine = minimumFieldsPerLine;
@@ -33,6 +45,26 @@ public class CSVParser {
         Objects.requireNonNull(csvFile);
         return new SurveyCSVParser(csvFile, order, direction);
     }
+    public static Parser createSurveyParser(File csvFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction, Ingestion ingestion) {
+        Objects.requireNonNull(csvFile);
+        return new SurveyCSVParser(csvFile, order, direction, ingestion);
+    }
+    public static Parser createSurveyParser(File csvFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction, Ingestion ingestion, Set<SurveyCSVData.Column> columns) {
+        Objects.requireNonNull(csvFile); Objects.requireNonNull(columns);
+        return new SurveyCSVParser(csvFile, order, direction, ingestion, columns);
+    }
+    public static Parser createColumnarSurveyParser(File csvFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction) {
+        Objects.requireNonNull(csvFile);
+        return new ColumnarSurveyCSVParser(csvFile, order, direction);
+    }
+    public static Parser createLazySurveyParser(File csvFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction, long cacheBytes) {
+        Objects.requireNonNull(csvFile);
+        return new LazySurveyCSVParser(csvFile, order, direction, cacheBytes);
+    }
+    public static Parser createSnapshotSurveyParser(File csvFile, File snapshotFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction) {
+        Objects.requireNonNull(csvFile); Objects.requireNonNull(snapshotFile);
+        return new SnapshotSurveyCSVParser(csvFile, snapshotFile, order, direction);
+    }
     public static Parser createSurveyParser(File csvFile) {
         return new SurveyCSVParser(csvFile, SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
     }
@@ -41,25 +73,173 @@ public class CSVParser {
         return csvFile.exists() && csvFile.canRead();
     }
     protected boolean fileIsCorrectlyFormatted() {
-        readFile();     
-        return linesOfCSVFile.size() > 0 && linesOfCSVFile.get(0).split(seperatorOfFields).length >= minimumFieldsPerLine;
-    }
-    protected List<String> fileLines() {
-        readFile();
-        return linesOfCSVFile.stream().skip(1).collect(toList());
+        String headerLine = readHeaderLine();
+        return null != headerLine && headerLine.split(seperatorOfFields).length >= minimumFieldsPerLine;
     }
 
-    private synchronized void readFile()
-    {
+    /**
+     * Lazily read the data lines of the file, header excluded, the caller must close the stream
+     * @return stream of lines backed by a buffered reader, only the lines in flight are held in memory
+     */
+    protected Stream<String> fileLines() {
         try {
-            if (null == linesOfCSVFile) {
-                if (true == fileExists())
-                    linesOfCSVFile = Files.readAllLines(csvFile.toPath());      // NOTE - BufferedReader may be preferred for very large files, can then process line by line or in chunks...
+            return Files.lines(csvFile.toPath(), StandardCharsets.UTF_8).skip(1);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("FAILED to read file content", e);
+        }
+    }
+
+    /**
+     * Open the file for memory-mapped reads
+     */
+    protected FileChannel openFileChannel() throws IOException {
+        return FileChannel.open(csvFile.toPath());
+    }
+
+    /**
+     * Split the data lines of the file into regions that start and end on line boundaries
+     * @param channel of the file
+     * @param targetChunkBytes approximate size of each region, a region is extended to the end of its last line
+     * @return ascending offsets, region i spans [offsets[i], offsets[i+1]), the first offset is just after the header
+     */
+    protected long[] lineAlignedChunkOffsets(FileChannel channel, long targetChunkBytes) throws IOException {
+        long sizeOfFile = channel.size();
+        return lineAlignedChunkOffsets(channel, endOfLineAt(channel, 0, sizeOfFile), sizeOfFile, targetChunkBytes);
+    }
+
+    /**
+     * Split the lines in [from, to) into regions that start and end on line boundaries, from must start a line
+     */
+    protected long[] lineAlignedChunkOffsets(FileChannel channel, long from, long to, long targetChunkBytes) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        long offset = from;
+        offsets.add(offset);
+        while (offset < to) {
+            offset = endOfLineAt(channel, Math.min(offset + targetChunkBytes, to), to);
+            offsets.add(offset);
+        }
+        return offsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * @return the offset itself if it starts a line, otherwise the start of the next line or the file size if there is none
+     */
+    protected long startOfLineAtOrAfter(FileChannel channel, long offset) throws IOException {
+        if (0 == offset)
+            return 0;
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        if (1 == channel.read(previous, offset - 1) && '\n' == previous.get(0))
+            return offset;
+        return endOfLineAt(channel, offset, channel.size());
+    }
+
+    /**
+     * @return offset just past the last new line in [from, to), or from if the range holds no complete line
+     */
+    protected long endOfLastCompleteLine(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long end = to;
+        while (end > from) {
+            long start = Math.max(from, end - window.capacity());
+            window.clear();
+            window.limit((int)(end - start));
+            int read = 0;
+            while (window.hasRemaining() && read >= 0)
+                read = channel.read(window, start + window.position());
+            for (int i = window.position() - 1; i >= 0; i--) {
+                if ('\n' == window.get(i))
+                    return start + i + 1;
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    /**
+     * @return current size of the file in bytes
+     */
+    protected long fileSize() {
+        return csvFile.length();
+    }
+
+    /**
+     * Split the data lines of the file into enough line-aligned regions to keep the common fork-join pool busy
+     *
+     * Every full parse reads the rows of these regions, the last ends at the end of the file, which ends a last line without a new line.
+     * Only bytes up to endOfConsumedLines are recorded as consumed, so a last line still being written is read again by an append.
+     */
+    protected long[] parallelChunkOffsets(FileChannel channel) throws IOException {
+        return lineAlignedChunkOffsets(channel, parallelChunkBytes(channel.size()));
+    }
+
+    /**
+     * @return offset just past the last new line in [from, to), never before from, where a parse of the lines in [from, to) has consumed up to
+     */
+    protected long endOfConsumedLines(FileChannel channel, long from, long to) throws IOException {
+        return endOfLastCompleteLine(channel, from, to);
+    }
+
+    /**
+     * @return offset just past the header line, the file size if it has no new line
+     */
+    protected long endOfHeader(FileChannel channel) throws IOException {
+        return endOfLineAt(channel, 0, channel.size());
+    }
+
+    /**
+     * Region size that keeps the common fork-join pool busy over the given number of bytes
+     */
+    protected long parallelChunkBytes(long bytes) {
+        return Math.max(MAPPED_CHUNK_BYTES_MIN, Math.min(MAPPED_CHUNK_BYTES_MAX, bytes / (4 * ForkJoinPool.getCommonPoolParallelism())));
+    }
+
+    /**
+     * Map a region of the file read-only, scans of it add the bytes they consume to BYTES_PARSED themselves
+     */
+    protected MappedByteBuffer mapFileRegion(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE)
+            throw new IOException("Region of " + (to - from) + " bytes is too large to map, a line may be unterminated");
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    /**
+     * @return offset just past the first new line at or after the given offset, or the file size if there is none
+     */
+    private static long endOfLineAt(FileChannel channel, long offset, long sizeOfFile) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        while (offset < sizeOfFile) {
+            window.clear();
+            int read = channel.read(window, offset);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if ('\n' == window.get(i))
+                    return offset + i + 1;
             }
+            offset += read;
+        }
+        return sizeOfFile;
+    }
+
+    private String readHeaderLine()
+    {
+        if (false == fileExists())
+            return null;
+        try (BufferedReader reader = Files.newBufferedReader(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            return reader.readLine();       // NOTE - Only the header is read, the data lines are streamed later
         }
         catch (IOException e) {
             // NOTE - Retry in a limited loop, ...
             throw new RuntimeException("FAILED to read file content");
         }
     }
+
+    /**
+     * How the file content is brought into the parser
+     */
+    public enum Ingestion {
+        STREAMED,           // Lines decoded to Strings through a buffered reader
+        MAPPED              // Bytes tokenized in place over memory-mapped regions of the file
+    }
 }
@@ -0,0 +1,141 @@
+package org.employee.survey.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lock-free pool resolving repeated field values to one shared String, meant to live for a single parse
+ *
+ * ASCII fields are matched against pooled Strings straight from their bytes, so a repeated name costs no allocation at all.
+ * Once the pool holds its maximum number of Strings, values not already pooled are returned as fresh Strings.
+ */
+public final class CSVStringPool {
+
+    private final AtomicReferenceArray<String> table;       // NOTE - Open addressing, at most half full so probes stay short
+    private final int maximumStrings;
+    private final AtomicInteger pooledStrings = new AtomicInteger();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder estimatedBytesSaved = new LongAdder();
+
+    /**
+     * @param maximumStrings number of distinct Strings held before the pool stops growing
+     */
+    public CSVStringPool(int maximumStrings) {
+        if (maximumStrings < 1 || maximumStrings > 1 << 29)
+            throw new IllegalArgumentException("Pool size of " + maximumStrings + " strings is out of range");
+        this.maximumStrings = maximumStrings;
+        this.table = new AtomicReferenceArray<>(Integer.highestOneBit(maximumStrings * 2 - 1) << 1);
+    }
+
+    /**
+     * Shared instance equal to the value
+     */
+    public String intern(String value) {
+        lookups.increment();
+        int mask = table.length() - 1;
+        for (int slot = spread(value.hashCode()) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            String pooled = table.get(slot);
+            if (null == pooled) {
+                if (false == claim(slot, value))
+                    return value;
+                pooled = table.get(slot);
+                if (pooled == value)
+                    return value;
+            }
+            if (pooled.equals(value))
+                return shared(pooled);
+        }
+        return value;
+    }
+
+    /**
+     * Shared instance equal to the UTF-8 text of bytes[from, to), the buffer position is not used or changed
+     */
+    public String intern(ByteBuffer bytes, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            byte b = bytes.get(i);
+            if (b < 0)
+                return intern(decode(bytes, from, to));     // NOTE - Multi-byte characters hash differently from their bytes
+            hash = 31 * hash + b;                           // NOTE - Same as String.hashCode for ASCII
+        }
+
+        lookups.increment();
+        int mask = table.length() - 1;
+        for (int slot = spread(hash) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            String pooled = table.get(slot);
+            if (null == pooled) {
+                String value = decode(bytes, from, to);
+                if (false == claim(slot, value))
+                    return value;
+                pooled = table.get(slot);
+                if (pooled == value)
+                    return value;
+            }
+            if (matches(pooled, bytes, from, to))
+                return shared(pooled);
+        }
+        return decode(bytes, from, to);         // NOTE - Only reachable if racing threads overfilled the table
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+    public long getHits() {
+        return hits.sum();
+    }
+    public int getPooledStrings() {
+        return pooledStrings.get();
+    }
+
+    /**
+     * Heap not retained thanks to hits, from the usual footprint of a String and its char array with compressed pointers
+     */
+    public long getEstimatedBytesSaved() {
+        return estimatedBytesSaved.sum();
+    }
+
+    /**
+     * Put the value in an empty slot unless the pool is full
+     * @return false if the pool is full, otherwise the slot holds either the value or one raced in by another thread
+     */
+    private boolean claim(int slot, String value) {
+        if (pooledStrings.get() >= maximumStrings)
+            return false;
+        if (table.compareAndSet(slot, null, value))
+            pooledStrings.incrementAndGet();
+        return true;
+    }
+
+    private String shared(String pooled) {
+        hits.increment();
+        estimatedBytesSaved.add(24 + ((16 + 2L * pooled.length() + 7) & ~7L));
+        return pooled;
+    }
+
+    private static boolean matches(String pooled, ByteBuffer bytes, int from, int to) {
+        if (pooled.length() != to - from)
+            return false;
+        for (int i = from; i < to; i++) {
+            if (pooled.charAt(i - from) != bytes.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer bytes, int from, int to) {
+        byte[] copy = new byte[to - from];
+        for (int i = from; i < to; i++)
+            copy[i - from] = bytes.get(i);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -3,7 +3,10 @@ package org.employee.survey.exception;
 public class MalformedCSVException extends Exception {
 
 	public MalformedCSVException(String string) {
-		// TODO Auto-generated constructor stub
+		super(string);
+	}
+	public MalformedCSVException(String string, Throwable cause) {
+		super(string, cause);
 	}
 
 }
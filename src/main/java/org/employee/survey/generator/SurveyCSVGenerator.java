@@ -0,0 +1,263 @@
+package org.employee.survey.generator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class for generating synthetic survey CSV files of any size, the same settings and seed always give the same bytes
+ *
+ * Rows are spread over divisions, teams and managers uniformly, names are drawn from generated vocabularies with a Zipf-like skew
+ * so a few names are very common, as in real extracts. Duplicate rows repeat an earlier row exactly and malformed rows break
+ * one field, both at configurable rates.
+ */
+public final class SurveyCSVGenerator {
+
+    public static final String HEADER = "divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate";
+
+    private static final String[] SYLLABLES = {"ar", "ben", "cor", "da", "el", "fin", "gar", "hel", "is", "jo", "ka", "lin", "mo", "na", "or", "pe",
+            "qui", "ros", "sa", "ta", "ul", "vin", "wen", "xa", "yo", "zel"};
+
+    private final long seed;
+    private final long rows;
+    private final int divisions, teamsPerDivision, managersPerTeam;
+    private final String[] firstNames, lastNames;
+    private final double[] firstNameWeights, lastNameWeights;
+    private final double duplicateRate, malformedRate;
+    private final int firstBirthYear, lastBirthYear;
+
+    private SurveyCSVGenerator(Builder builder) {
+        this.seed = builder.seed;
+        this.rows = builder.rows;
+        this.divisions = builder.divisions;
+        this.teamsPerDivision = builder.teamsPerDivision;
+        this.managersPerTeam = builder.managersPerTeam;
+        this.duplicateRate = builder.duplicateRate;
+        this.malformedRate = builder.malformedRate;
+        this.firstBirthYear = builder.firstBirthYear;
+        this.lastBirthYear = builder.lastBirthYear;
+
+        Random vocabulary = new Random(seed);
+        this.firstNames = names(vocabulary, builder.distinctFirstNames);
+        this.lastNames = names(vocabulary, builder.distinctLastNames);
+        this.firstNameWeights = cumulativeZipfWeights(builder.distinctFirstNames, builder.nameSkew);
+        this.lastNameWeights = cumulativeZipfWeights(builder.distinctLastNames, builder.nameSkew);
+    }
+
+    /**
+     * Write the CSV to a file, replacing it
+     */
+    public Summary write(Path csvFilePath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFilePath, StandardCharsets.UTF_8)) {
+            return write(writer);
+        }
+    }
+
+    /**
+     * Write the header and rows, the writer is left open
+     */
+    public Summary write(Writer writer) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder line = new StringBuilder(96);
+        String previousRow = null;
+        long nextEmployeeId = 1, duplicateRows = 0, malformedRows = 0;
+
+        writer.write(HEADER);
+        writer.write('\n');
+        for (long row = 0; row < rows; row++) {
+            double kind = random.nextDouble();
+            if (kind < duplicateRate && null != previousRow) {
+                writer.write(previousRow);          // NOTE - Same ids, so parsers keep only the first of the two
+                duplicateRows++;
+                continue;
+            }
+
+            int division = 1 + random.nextInt(divisions);
+            int team = 1 + random.nextInt(teamsPerDivision);
+            int manager = 1 + random.nextInt(managersPerTeam);
+            String firstName = firstNames[pick(firstNameWeights, random.nextDouble())];
+            String lastName = lastNames[pick(lastNameWeights, random.nextDouble())];
+            int year = firstBirthYear + random.nextInt(lastBirthYear - firstBirthYear + 1);
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(28);
+
+            line.setLength(0);
+            if (kind < duplicateRate + malformedRate) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        line.append(division).append(',').append(team).append(',').append(manager).append(',').append(nextEmployeeId).append('x').append(',')    // NOTE - Id no longer a number
+                            .append(firstName).append(',').append(lastName).append(',').append(year).append('-').append(month).append('-').append(day);
+                        break;
+                    case 1:
+                        line.append(division).append(',').append(team).append(',').append(manager).append(',').append(nextEmployeeId).append(',')
+                            .append(firstName).append(',').append(lastName).append(',').append(year).append("-13-").append(day);       // NOTE - No such month
+                        break;
+                    default:
+                        line.append(division).append(',').append(team).append(',').append(manager).append(',').append(nextEmployeeId);    // NOTE - Too few fields, skipped by parsers
+                        break;
+                }
+                line.append('\n');
+                writer.append(line);
+                malformedRows++;
+                nextEmployeeId++;
+                continue;
+            }
+
+            line.append(division).append(',').append(team).append(',').append(manager).append(',').append(nextEmployeeId++).append(',')
+                .append(firstName).append(',').append(lastName).append(',').append(year).append('-').append(month).append('-').append(day).append('\n');
+            previousRow = line.toString();
+            writer.write(previousRow);
+        }
+        return new Summary(rows, duplicateRows, malformedRows);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static String[] names(Random random, int count) {
+        String[] names = new String[count];
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            name.setLength(0);
+            for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--)
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            name.append(i);                                             // NOTE - Keeps every generated name distinct
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            names[i] = name.toString();
+        }
+        return names;
+    }
+
+    /**
+     * Cumulative weights 1/rank^skew normalized to 1, a skew of 0 is uniform
+     */
+    private static double[] cumulativeZipfWeights(int count, double skew) {
+        double[] weights = new double[count];
+        double total = 0;
+        for (int rank = 0; rank < count; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            weights[rank] = total;
+        }
+        for (int rank = 0; rank < count; rank++)
+            weights[rank] /= total;
+        return weights;
+    }
+
+    private static int pick(double[] cumulativeWeights, double uniform) {
+        int index = Arrays.binarySearch(cumulativeWeights, uniform);
+        return Math.min(index >= 0 ? index : -index - 1, cumulativeWeights.length - 1);
+    }
+
+    /**
+     * Counts of what was written
+     */
+    public final static class Summary {
+        private final long rows;
+        private final long duplicateRows;
+        private final long malformedRows;
+
+        private Summary(long rows, long duplicateRows, long malformedRows) {
+            this.rows = rows;
+            this.duplicateRows = duplicateRows;
+            this.malformedRows = malformedRows;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+        public long getDuplicateRows() {
+            return duplicateRows;
+        }
+        public long getMalformedRows() {
+            return malformedRows;
+        }
+        /**
+         * @return rows that are neither duplicates nor malformed, each a distinct employee
+         */
+        public long getEmployees() {
+            return rows - duplicateRows - malformedRows;
+        }
+
+        @Override
+        public String toString() {
+            return "(rows='" + rows + "', duplicateRows='" + duplicateRows + "', malformedRows='" + malformedRows + "')";
+        }
+    }
+
+    /**
+     * Settings of a generator, defaults resemble the sample data
+     */
+    public static final class Builder {
+        private long seed = 1;
+        private long rows = 1000;
+        private int divisions = 30, teamsPerDivision = 15, managersPerTeam = 5;
+        private int distinctFirstNames = 1000, distinctLastNames = 500;
+        private double nameSkew = 1.0;
+        private double duplicateRate, malformedRate;
+        private int firstBirthYear = 1950, lastBirthYear = 2000;
+
+        private Builder() {
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+        public Builder rows(long rows) {
+            if (rows < 0)
+                throw new IllegalArgumentException("Rows must not be negative");
+            this.rows = rows;
+            return this;
+        }
+        /**
+         * Ids at each level run from 1 to the given count, so team and manager ids repeat under different parents
+         */
+        public Builder fanOut(int divisions, int teamsPerDivision, int managersPerTeam) {
+            if (divisions < 1 || teamsPerDivision < 1 || managersPerTeam < 1)
+                throw new IllegalArgumentException("Fan-out must be at least 1 at every level");
+            this.divisions = divisions;
+            this.teamsPerDivision = teamsPerDivision;
+            this.managersPerTeam = managersPerTeam;
+            return this;
+        }
+        /**
+         * @param skew exponent of the Zipf-like name frequencies, 0 for uniform
+         */
+        public Builder names(int distinctFirstNames, int distinctLastNames, double skew) {
+            if (distinctFirstNames < 1 || distinctLastNames < 1 || skew < 0)
+                throw new IllegalArgumentException("Name vocabularies must not be empty and skew must not be negative");
+            this.distinctFirstNames = distinctFirstNames;
+            this.distinctLastNames = distinctLastNames;
+            this.nameSkew = skew;
+            return this;
+        }
+        public Builder birthYears(int firstBirthYear, int lastBirthYear) {
+            if (firstBirthYear < 1 || lastBirthYear > 9999 || firstBirthYear > lastBirthYear)
+                throw new IllegalArgumentException("Birth years must be an ascending range within 1 to 9999");
+            this.firstBirthYear = firstBirthYear;
+            this.lastBirthYear = lastBirthYear;
+            return this;
+        }
+        /**
+         * @param duplicateRate fraction of rows repeating the previous valid row
+         * @param malformedRate fraction of rows with a bad number, a bad date or too few fields
+         */
+        public Builder faults(double duplicateRate, double malformedRate) {
+            if (duplicateRate < 0 || malformedRate < 0 || duplicateRate + malformedRate > 1)
+                throw new IllegalArgumentException("Fault rates must be fractions summing to at most 1");
+            this.duplicateRate = duplicateRate;
+            this.malformedRate = malformedRate;
+            return this;
+        }
+
+        public SurveyCSVGenerator build() {
+            return new SurveyCSVGenerator(this);
+        }
+    }
+}
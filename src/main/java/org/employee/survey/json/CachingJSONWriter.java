@@ -0,0 +1,54 @@
+package org.employee.survey.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.parser.SurveyCSVParser;
+
+/**
+ * Class writing the JSON of divisions from a ResultCache, keyed by data revision and division id
+ *
+ * A division is serialized once per revision of the data and kept as UTF-8 bytes, sized by their length.
+ */
+public final class CachingJSONWriter {
+
+    static final String DIVISION_QUERY = "json.division";
+
+    private final SurveyCSVParser.SurveyCSVData surveyData;
+    private final ResultCache cache;
+    private final Object source = new Object();                 // NOTE - Token in keys, so cached results do not keep the data reachable
+
+    public CachingJSONWriter(SurveyCSVParser.SurveyCSVData surveyData, ResultCache cache) {
+        this.surveyData = Objects.requireNonNull(surveyData);
+        this.cache = Objects.requireNonNull(cache);
+    }
+
+    /**
+     * Write the division as JSONWriter.write(output, division) does, the output is left open
+     * @return false if no division has the id, nothing is written
+     */
+    public boolean writeDivision(OutputStream output, Integer divisionId) throws IOException {
+        byte[] json = cache.get(new ResultCache.Key(source, surveyData.getRevision(), DIVISION_QUERY, divisionId), bytes -> bytes.length, () -> {
+            SurveyCSVParser.SurveyCSVData.Division division = surveyData.getDivisions().get(divisionId);
+            if (null == division)
+                return null;
+            ByteArrayOutputStream divisionJSON = new ByteArrayOutputStream();
+            JSONWriter.write(divisionJSON, division);
+            return divisionJSON.toByteArray();
+        });
+        if (null == json)
+            return false;
+        output.write(json);
+        return true;
+    }
+
+    /**
+     * Drop every cached division of this writer, e.g. once its data is replaced by a rebuilt version
+     */
+    public void invalidate() {
+        cache.invalidate(source);
+    }
+}
@@ -1,19 +1,34 @@
 package org.employee.survey.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
 
 import org.employee.survey.csv.CSVData;
+import org.employee.survey.metrics.SurveyMetrics;
+import org.employee.survey.parser.ColumnarSurveyData;
+import org.employee.survey.parser.LazySurveyData;
+import org.employee.survey.parser.SurveyCSVParser;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 
 /**
  * Class for writing JSON data from object graph via Jackson libraries
  *
+ * Survey data is walked and emitted through a JsonGenerator as it goes, so writing to a stream never holds the whole document.
  */
 public final class JSONWriter {
 
+    private static final ObjectMapper OBJECT_TO_JSON_MAPPER = new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);     // NOTE - Thread safe once configured, callers own their streams
+    private static final ObjectWriter OBJECT_TO_JSON_WRITER = OBJECT_TO_JSON_MAPPER.writer();
+
     private final CSVData csvData;
 
     public JSONWriter(CSVData csvData) {
@@ -21,11 +36,157 @@ public final class JSONWriter {
     }
 
     public String write() throws JsonProcessingException, IOException {
-    	String jsonStringRepresentation = null;
-        ObjectMapper objectToJsonMapper = new ObjectMapper();
-       
-         jsonStringRepresentation = objectToJsonMapper.writeValueAsString(csvData);   
-       
-        return jsonStringRepresentation;
+        StringWriter jsonStringRepresentation = new StringWriter();
+        write(jsonStringRepresentation);
+        return jsonStringRepresentation.toString();
+    }
+
+    /**
+     * Stream JSON as UTF-8 to the output, which is flushed but left open
+     */
+    public void write(OutputStream output) throws IOException {
+        SurveyMetrics.Timer serializationTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.JSON_SERIALIZATION);
+        try (JsonGenerator generator = OBJECT_TO_JSON_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8)) {
+            write(generator);
+        }
+        finally {
+            serializationTimer.close();
+        }
+    }
+
+    /**
+     * Stream JSON to the writer, which is flushed but left open
+     */
+    public void write(Writer output) throws IOException {
+        SurveyMetrics.Timer serializationTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.JSON_SERIALIZATION);
+        try (JsonGenerator generator = OBJECT_TO_JSON_MAPPER.getJsonFactory().createJsonGenerator(output)) {
+            write(generator);
+        }
+        finally {
+            serializationTimer.close();
+        }
+    }
+
+    /**
+     * Stream JSON of one division as UTF-8 to the output, shaped as the division is within the whole document
+     */
+    public static void write(OutputStream output, SurveyCSVParser.SurveyCSVData.Division division) throws IOException {
+        write(output, generator -> writeDivision(generator, division));
+    }
+    public static void write(OutputStream output, SurveyCSVParser.SurveyCSVData.Team team) throws IOException {
+        write(output, generator -> writeTeam(generator, team));
+    }
+    public static void write(OutputStream output, SurveyCSVParser.SurveyCSVData.Manager manager) throws IOException {
+        write(output, generator -> writeManager(generator, manager));
+    }
+
+    private static void write(OutputStream output, NodeWriter nodeWriter) throws IOException {
+        SurveyMetrics.Timer serializationTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.JSON_SERIALIZATION);
+        try (JsonGenerator generator = OBJECT_TO_JSON_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8)) {
+            nodeWriter.write(generator);
+        }
+        finally {
+            serializationTimer.close();
+        }
+    }
+
+    private void write(JsonGenerator generator) throws IOException {
+        if (true == csvData instanceof SurveyCSVParser.SurveyCSVData)
+            writeSurveyData(generator, ((SurveyCSVParser.SurveyCSVData)csvData).getDivisions());
+        else if (true == csvData instanceof LazySurveyData)
+            writeSurveyData(generator, ((LazySurveyData)csvData).getDivisions());        // NOTE - Divisions are decoded one at a time as they are written
+        else if (true == csvData instanceof ColumnarSurveyData)
+            writeColumnarSurveyData(generator, (ColumnarSurveyData)csvData);
+        else
+            OBJECT_TO_JSON_WRITER.writeValue(generator, csvData);
+    }
+
+    // NOTE - Same shape as the Jackson bean mapping of SurveyCSVData, keep both in step
+    private static void writeSurveyData(JsonGenerator generator, Map<Integer, SurveyCSVParser.SurveyCSVData.Division> divisions) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("divisions");
+        for (Map.Entry<Integer, SurveyCSVParser.SurveyCSVData.Division> division : divisions.entrySet()) {
+            generator.writeFieldName(division.getKey().toString());
+            writeDivision(generator, division.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeDivision(JsonGenerator generator, SurveyCSVParser.SurveyCSVData.Division division) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("teams");
+        for (Map.Entry<Integer, SurveyCSVParser.SurveyCSVData.Team> team : division.getTeams().entrySet()) {
+            generator.writeFieldName(team.getKey().toString());
+            writeTeam(generator, team.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeTeam(JsonGenerator generator, SurveyCSVParser.SurveyCSVData.Team team) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("managers");
+        for (Map.Entry<Integer, SurveyCSVParser.SurveyCSVData.Manager> manager : team.getManagers().entrySet()) {
+            generator.writeFieldName(manager.getKey().toString());
+            writeManager(generator, manager.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeManager(JsonGenerator generator, SurveyCSVParser.SurveyCSVData.Manager manager) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("employees");
+        for (Map.Entry<Integer, SurveyCSVParser.SurveyCSVData.Employee> employee : manager.getOrderedEmployees().entrySet()) {
+            generator.writeObjectFieldStart(employee.getKey().toString());
+            generator.writeNumberField("id", employee.getValue().getId());
+            if (null != employee.getValue().getFirstName())                 // NOTE - Names of columns not parsed are left out, as the bean mapping does
+                generator.writeStringField("firstName", employee.getValue().getFirstName());
+            if (null != employee.getValue().getLastName())
+                generator.writeStringField("lastName", employee.getValue().getLastName());
+            generator.writeStringField("birthdate", employee.getValue().getBirthdate());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    // NOTE - Walks the columns directly, no flyweight views are created
+    private static void writeColumnarSurveyData(JsonGenerator generator, ColumnarSurveyData surveyData) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("divisions");
+        for (int d = 0; d < surveyData.getDivisionCount(); d++) {
+            generator.writeObjectFieldStart(Integer.toString(surveyData.getDivisionId(d)));
+            generator.writeObjectFieldStart("teams");
+            for (int t = surveyData.getFirstTeamOf(d); t < surveyData.getEndTeamOf(d); t++) {
+                generator.writeObjectFieldStart(Integer.toString(surveyData.getTeamId(t)));
+                generator.writeObjectFieldStart("managers");
+                for (int m = surveyData.getFirstManagerOf(t); m < surveyData.getEndManagerOf(t); m++) {
+                    generator.writeObjectFieldStart(Integer.toString(surveyData.getManagerId(m)));
+                    generator.writeObjectFieldStart("employees");
+                    for (int e = surveyData.getFirstEmployeeOf(m); e < surveyData.getEndEmployeeOf(m); e++) {
+                        generator.writeObjectFieldStart(Integer.toString(surveyData.getEmployeeId(e)));
+                        generator.writeNumberField("id", surveyData.getEmployeeId(e));
+                        generator.writeStringField("firstName", surveyData.getFirstName(e));
+                        generator.writeStringField("lastName", surveyData.getLastName(e));
+                        generator.writeStringField("birthdate", surveyData.getBirthdate(e));
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private interface NodeWriter {
+        void write(JsonGenerator generator) throws IOException;
     }
 }
@@ -0,0 +1,66 @@
+package org.employee.survey.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in power of two nanosecond buckets, so a percentile is exact to within a factor of two
+ *
+ */
+public final class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);        // NOTE - Bucket b counts latencies in [2^(b-1), 2^b) nanoseconds
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(latency));
+        count.increment();
+        totalNanos.add(latency);
+        maxNanos.accumulate(latency);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return upper bound of the bucket holding the percentile, never more than the largest latency recorded, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile " + percentile + " is out of range");
+        long recorded = 0;
+        for (int bucket = 0; bucket < buckets.length(); bucket++)
+            recorded += buckets.get(bucket);
+        if (0 == recorded)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank)
+                return Math.min(0 == bucket ? 0 : (1L << bucket) - 1, getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < buckets.length(); bucket++)
+            buckets.set(bucket, 0);
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
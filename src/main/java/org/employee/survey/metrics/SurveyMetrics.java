@@ -0,0 +1,290 @@
+package org.employee.survey.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Class collecting timings, counters, allocation and query latencies of the survey pipeline
+ *
+ * Parsers, analyzers and writers report to the process-wide instance from global(), all updates are lock-free so
+ * parallel parses can report from every thread. Hot per-row work is timed with System.nanoTime only and reported once per chunk,
+ * allocation is read from the ThreadMXBean when a coarse stage or chunk ends and is attributed to the thread that did the work.
+ * Stages nest, PARSE covers the stages of a parse, so their times and allocations overlap rather than add up.
+ */
+public final class SurveyMetrics implements SurveyMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.employee.survey:type=SurveyMetrics";
+
+    private static final SurveyMetrics GLOBAL = new SurveyMetrics();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final ObjectMapper SUMMARY_MAPPER = new ObjectMapper();
+    private static final ThreadLocal<int[]> OPEN_TIMERS = ThreadLocal.withInitial(() -> new int[1]);
+
+    public enum Stage {
+        PARSE,                  // NOTE - Whole parse, covering the three stages below
+        FILE_READ,
+        TOKENIZE,
+        HIERARCHY_BUILD,
+        SORT,
+        ANALYSIS,
+        JSON_SERIALIZATION
+    }
+
+    public enum Counter {
+        ROWS_PARSED,
+        DUPLICATE_ROWS,
+        SKIPPED_ROWS,           // NOTE - Too few fields
+        BYTES_PARSED,           // NOTE - Data bytes consumed by scans of the file, the header and rows read again on demand are not counted
+        RESULT_CACHE_HITS,
+        RESULT_CACHE_MISSES,
+        RESULT_CACHE_EVICTIONS
+    }
+
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    private final Map<String, LongAdder> allocatedBytesByThread = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> queryLatencies = new ConcurrentHashMap<>();
+
+    SurveyMetrics() {
+        for (Stage stage : Stage.values())
+            stages.put(stage, new StageMetrics());
+        for (Counter counter : Counter.values())
+            counters.put(counter, new LongAdder());
+    }
+
+    public static SurveyMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Register the global metrics with the platform MBean server under OBJECT_NAME, registering twice is harmless
+     */
+    public static void registerGlobal() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException e) {
+            // NOTE - Already registered
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("FAILED to register survey metrics", e);
+        }
+    }
+
+    /**
+     * Start timing a coarse stage on the current thread, close the timer when the stage ends
+     */
+    public Timer start(Stage stage) {
+        return new Timer(stage);
+    }
+
+    /**
+     * Add time already measured for a stage, for work timed in many small pieces and reported in bulk, e.g. once per chunk
+     * @param invocations runs of the stage the time covers, the whole amount counts as one run for the stage maximum
+     */
+    public void addNanos(Stage stage, long invocations, long nanos) {
+        StageMetrics metrics = stages.get(stage);
+        metrics.invocations.add(invocations);
+        metrics.totalNanos.add(nanos);
+        metrics.maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Mark the start of work on the current thread whose allocation is reported by addAllocation, e.g. a chunk parsed on a pool thread
+     * @return bytes allocated so far by the thread, -1 if a timer open on the thread already covers the work or the JVM does not measure it
+     */
+    public long allocationMark() {
+        return 0 == OPEN_TIMERS.get()[0] ? allocatedBytesOfCurrentThread() : -1;
+    }
+
+    /**
+     * Add the bytes allocated by the current thread since the mark to the stage and the thread
+     */
+    public void addAllocation(Stage stage, long allocationMark) {
+        if (allocationMark >= 0)
+            addAllocation(stage, allocationMark, true);
+    }
+
+    public void add(Counter counter, long amount) {
+        counters.get(counter).add(amount);
+    }
+
+    /**
+     * Record the latency of a named analyzer query started at the given System.nanoTime
+     */
+    public void recordQuery(String query, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        queryLatencies.computeIfAbsent(query, q -> new LatencyHistogram()).record(nanos);
+        addNanos(Stage.ANALYSIS, 1, nanos);
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stages.get(stage).totalNanos.sum();
+    }
+    public long getStageInvocations(Stage stage) {
+        return stages.get(stage).invocations.sum();
+    }
+    public long getStageAllocatedBytes(Stage stage) {
+        return stages.get(stage).allocatedBytes.sum();
+    }
+    public long getCounter(Counter counter) {
+        return counters.get(counter).sum();
+    }
+    public Map<String, Long> getAllocatedBytesByThread() {
+        Map<String, Long> allocated = new TreeMap<>();
+        allocatedBytesByThread.forEach((thread, bytes) -> allocated.put(thread, bytes.sum()));
+        return allocated;
+    }
+    /**
+     * @return histogram of the query, empty if the query was never recorded
+     */
+    public LatencyHistogram getQueryLatency(String query) {
+        LatencyHistogram histogram = queryLatencies.get(query);
+        return null == histogram ? new LatencyHistogram() : histogram;
+    }
+
+    @Override
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        summary().forEach((group, values) -> values.forEach((name, value) -> {
+            if (value instanceof Map)
+                ((Map<?, ?>)value).forEach((field, number) -> metrics.put(group + "." + name + "." + field, (Long)number));
+            else
+                metrics.put(group + "." + name, (Long)value);
+        }));
+        return metrics;
+    }
+
+    @Override
+    public String getSummaryJSON() {
+        try {
+            return SUMMARY_MAPPER.writeValueAsString(summary());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("FAILED to write metrics summary", e);
+        }
+    }
+
+    /**
+     * Clear every metric, updates racing with a reset may be kept or lost
+     */
+    @Override
+    public void reset() {
+        stages.values().forEach(StageMetrics::reset);
+        counters.values().forEach(LongAdder::reset);
+        allocatedBytesByThread.clear();
+        queryLatencies.clear();
+    }
+
+    private Map<String, Map<String, Object>> summary() {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+
+        Map<String, Object> stageSummary = new LinkedHashMap<>();
+        stages.forEach((stage, metrics) -> {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("invocations", metrics.invocations.sum());
+            values.put("totalNanos", metrics.totalNanos.sum());
+            values.put("maxNanos", metrics.maxNanos.get());
+            values.put("allocatedBytes", metrics.allocatedBytes.sum());
+            stageSummary.put(stage.name(), values);
+        });
+        summary.put("stage", stageSummary);
+
+        Map<String, Object> counterSummary = new LinkedHashMap<>();
+        counters.forEach((counter, value) -> counterSummary.put(counter.name(), value.sum()));
+        summary.put("counter", counterSummary);
+
+        Map<String, Object> querySummary = new LinkedHashMap<>();
+        new TreeMap<>(queryLatencies).forEach((query, histogram) -> {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("totalNanos", histogram.getTotalNanos());
+            values.put("p50Nanos", histogram.getPercentileNanos(50));
+            values.put("p90Nanos", histogram.getPercentileNanos(90));
+            values.put("p99Nanos", histogram.getPercentileNanos(99));
+            values.put("maxNanos", histogram.getMaxNanos());
+            querySummary.put(query, values);
+        });
+        summary.put("query", querySummary);
+
+        summary.put("allocatedBytesByThread", new LinkedHashMap<>(getAllocatedBytesByThread()));
+        return summary;
+    }
+
+    private void addAllocation(Stage stage, long allocationMark, boolean ofThread) {
+        long allocatedBytes = allocatedBytesOfCurrentThread() - allocationMark;
+        if (allocatedBytes < 0)
+            return;
+        stages.get(stage).allocatedBytes.add(allocatedBytes);
+        if (true == ofThread)
+            allocatedBytesByThread.computeIfAbsent(Thread.currentThread().getName(), t -> new LongAdder()).add(allocatedBytes);
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, -1 if the JVM does not measure it
+     */
+    private static long allocatedBytesOfCurrentThread() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Time and allocation of one run of a stage on one thread, only the outermost open timer of a thread adds to the thread's allocation
+     */
+    public final class Timer implements AutoCloseable {
+        private final Stage stage;
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private final boolean outermost;
+
+        private Timer(Stage stage) {
+            this.stage = stage;
+            this.outermost = 0 == OPEN_TIMERS.get()[0]++;
+            this.startAllocatedBytes = allocatedBytesOfCurrentThread();
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            addNanos(stage, 1, System.nanoTime() - startNanos);
+            OPEN_TIMERS.get()[0]--;
+            if (startAllocatedBytes >= 0)
+                addAllocation(stage, startAllocatedBytes, outermost);
+        }
+    }
+
+    private static final class StageMetrics {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private void reset() {
+            invocations.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            allocatedBytes.reset();
+        }
+    }
+}
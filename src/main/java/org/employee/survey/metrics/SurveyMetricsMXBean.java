@@ -0,0 +1,22 @@
+package org.employee.survey.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the survey metrics, registered by SurveyMetrics.registerGlobal
+ *
+ */
+public interface SurveyMetricsMXBean {
+
+    /**
+     * @return every metric under a dotted name, e.g. stage.PARSE.totalNanos, counter.ROWS_PARSED, query.averageAge.p99Nanos
+     */
+    Map<String, Long> getMetrics();
+
+    /**
+     * @return the same metrics as a JSON document
+     */
+    String getSummaryJSON();
+
+    void reset();
+}
@@ -0,0 +1,120 @@
+package org.employee.survey.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, mergeable summary of the birthdates below a node, the distinct birth days in order with cumulative counts
+ *
+ * Its size is bounded by the distinct birthdates, at most 366 per year of the birth range, however many employees it covers.
+ * Quantiles and counts between dates are exact and found by binary search, parents are summarized by merging their children.
+ */
+public final class BirthdateSketch {
+
+    public static final BirthdateSketch EMPTY = new BirthdateSketch(new int[0], new long[0]);
+
+    private final int[] epochDays;              // NOTE - Ascending, distinct
+    private final long[] cumulativeCounts;      // NOTE - Employees born on or before epochDays[i]
+
+    private BirthdateSketch(int[] epochDays, long[] cumulativeCounts) {
+        this.epochDays = epochDays;
+        this.cumulativeCounts = cumulativeCounts;
+    }
+
+    /**
+     * Summarize birthdates[from, to), the array is not changed
+     */
+    public static BirthdateSketch of(int[] birthdateEpochDays, int from, int to) {
+        if (to <= from)
+            return EMPTY;
+        int[] sorted = Arrays.copyOfRange(birthdateEpochDays, from, to);
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        int[] epochDays = new int[sorted.length];
+        long[] cumulativeCounts = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            if (0 == distinct || epochDays[distinct - 1] != sorted[i])
+                epochDays[distinct++] = sorted[i];
+            cumulativeCounts[distinct - 1] = i + 1;
+        }
+        return new BirthdateSketch(Arrays.copyOf(epochDays, distinct), Arrays.copyOf(cumulativeCounts, distinct));
+    }
+
+    /**
+     * Summary of all the sketches together, merged pairwise so the cost is the total size times the log of the count of sketches
+     */
+    public static BirthdateSketch merge(List<BirthdateSketch> sketches) {
+        if (true == sketches.isEmpty())
+            return EMPTY;
+        return merge(sketches, 0, sketches.size());
+    }
+
+    private static BirthdateSketch merge(List<BirthdateSketch> sketches, int from, int to) {
+        if (1 == to - from)
+            return sketches.get(from);
+        int middle = (from + to) >>> 1;
+        return merge(merge(sketches, from, middle), merge(sketches, middle, to));
+    }
+
+    public static BirthdateSketch merge(BirthdateSketch first, BirthdateSketch second) {
+        if (0 == first.epochDays.length)
+            return second;
+        if (0 == second.epochDays.length)
+            return first;
+
+        int[] epochDays = new int[first.epochDays.length + second.epochDays.length];
+        long[] cumulativeCounts = new long[epochDays.length];
+        int i = 0, j = 0, merged = 0;
+        long countOfFirst = 0, countOfSecond = 0;
+        while (i < first.epochDays.length || j < second.epochDays.length) {
+            int epochDay;
+            if (j == second.epochDays.length || (i < first.epochDays.length && first.epochDays[i] <= second.epochDays[j]))
+                epochDay = first.epochDays[i];
+            else
+                epochDay = second.epochDays[j];
+            if (i < first.epochDays.length && first.epochDays[i] == epochDay)
+                countOfFirst = first.cumulativeCounts[i++];
+            if (j < second.epochDays.length && second.epochDays[j] == epochDay)
+                countOfSecond = second.cumulativeCounts[j++];
+            epochDays[merged] = epochDay;
+            cumulativeCounts[merged++] = countOfFirst + countOfSecond;
+        }
+        return new BirthdateSketch(Arrays.copyOf(epochDays, merged), Arrays.copyOf(cumulativeCounts, merged));
+    }
+
+    public long getCount() {
+        return 0 == cumulativeCounts.length ? 0 : cumulativeCounts[cumulativeCounts.length - 1];
+    }
+
+    /**
+     * @return number of distinct birthdates held
+     */
+    public int getDistinctBirthdates() {
+        return epochDays.length;
+    }
+
+    /**
+     * @param rank from 1 to getCount, in ascending birthdate order
+     * @return birthdate of the employee at the rank
+     */
+    public int epochDayAtRank(long rank) {
+        if (rank < 1 || rank > getCount())
+            throw new IllegalArgumentException("Rank " + rank + " is outside 1 to " + getCount());
+        int index = Arrays.binarySearch(cumulativeCounts, rank);
+        return epochDays[index >= 0 ? index : -index - 1];
+    }
+
+    /**
+     * @return employees born on or after the first day and before the second
+     */
+    public long countBornBetween(long fromEpochDay, long toEpochDay) {
+        return countBornBefore(toEpochDay) - countBornBefore(fromEpochDay);
+    }
+
+    private long countBornBefore(long epochDay) {
+        int index = Arrays.binarySearch(epochDays, (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, epochDay)));
+        int before = index >= 0 ? index : -index - 1;
+        return 0 == before ? 0 : cumulativeCounts[before - 1];
+    }
+}
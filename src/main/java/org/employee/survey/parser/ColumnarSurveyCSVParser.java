@@ -0,0 +1,99 @@
+package org.employee.survey.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.*;
+
+import org.employee.survey.csv.CSVByteTokenizer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.metrics.SurveyMetrics;
+
+/**
+ * Class for parsing CSV data related to employee survey into columnar primitive storage
+ *
+ */
+public final class ColumnarSurveyCSVParser extends CSVParser implements Parser {
+
+    private static final short MIN_TOKENS_PER_LINE = 7;
+    private static final String SEPERATOR_OF_TOKENS = ",";
+
+    private final SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
+    private final CSVData.SortDirection sortDirectionOfEmployees;
+
+    public ColumnarSurveyCSVParser(File csvFile, SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees) {
+        super(csvFile, MIN_TOKENS_PER_LINE, SEPERATOR_OF_TOKENS);
+        this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
+        this.sortDirectionOfEmployees = sortDirectionOfEmployees;
+    }
+
+    @Override
+    public Optional<CSVData> parse() throws MalformedCSVException {
+        if (false == (fileExists() && fileIsCorrectlyFormatted()))
+            return Optional.empty();
+
+        SurveyMetrics metrics = SurveyMetrics.global();
+        SurveyMetrics.Timer parseTimer = metrics.start(SurveyMetrics.Stage.PARSE);
+        try (FileChannel channel = openFileChannel()) {
+            long[] chunkOffsets = parallelChunkOffsets(channel);
+
+            // Collect rows per chunk in parallel, then concatenate them in file order before laying out the hierarchy
+            List<ColumnarSurveyData.Builder> chunkBuilders = IntStream.range(0, chunkOffsets.length - 1).parallel()
+                    .mapToObj(chunk -> parseMappedChunk(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1]))
+                    .collect(toList());
+
+            ColumnarSurveyData.Builder builder = chunkBuilders.isEmpty() ? new ColumnarSurveyData.Builder(sortOrderOfDataOrEmployees, sortDirectionOfEmployees) : chunkBuilders.get(0);
+            SurveyMetrics.Timer buildTimer = metrics.start(SurveyMetrics.Stage.HIERARCHY_BUILD);
+            try {
+                for (int chunk = 1; chunk < chunkBuilders.size(); chunk++)
+                    builder.addRows(chunkBuilders.get(chunk));
+                return Optional.of(builder.build());
+            }
+            finally {
+                buildTimer.close();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            throw new MalformedCSVException("FAILED to parse CSV file");
+        }
+        finally {
+            parseTimer.close();
+        }
+    }
+
+    private ColumnarSurveyData.Builder parseMappedChunk(FileChannel channel, long from, long to) {
+        ColumnarSurveyData.Builder builder = new ColumnarSurveyData.Builder(sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+        SurveyMetrics metrics = SurveyMetrics.global();
+        long allocationMark = metrics.allocationMark(), startNanos = System.nanoTime(), rows = 0, skippedRows = 0;
+        try {
+            CSVByteTokenizer tokenizer = new CSVByteTokenizer(mapFileRegion(channel, from, to), SEPERATOR_OF_TOKENS.charAt(0), MIN_TOKENS_PER_LINE);
+            while (tokenizer.nextLine()) {
+                if (tokenizer.fieldCount() >= MIN_TOKENS_PER_LINE) {
+                    builder.addRow(tokenizer.intField(0), tokenizer.intField(1), tokenizer.intField(2), tokenizer.intField(3), tokenizer.stringField(4), tokenizer.stringField(5), tokenizer.epochDayField(6), tokenizer.paddedDateField(6));
+                    rows++;
+                }
+                else
+                    skippedRows++;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            metrics.addNanos(SurveyMetrics.Stage.TOKENIZE, rows, System.nanoTime() - startNanos);      // NOTE - Rows are only collected here, reading and tokenizing are not told apart
+            metrics.add(SurveyMetrics.Counter.ROWS_PARSED, rows);
+            metrics.add(SurveyMetrics.Counter.SKIPPED_ROWS, skippedRows);
+            metrics.add(SurveyMetrics.Counter.BYTES_PARSED, to - from);
+            metrics.addAllocation(SurveyMetrics.Stage.PARSE, allocationMark);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,709 @@
+package org.employee.survey.parser;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVDates;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Class representing survey data as parallel primitive arrays
+ *
+ * Employees are laid out contiguously in hierarchy order, each division, team and manager owns a range of the level below,
+ * names live in one shared char arena. The getDivisions() style views are flyweights over these arrays.
+ */
+public final class ColumnarSurveyData extends CSVData {
+
+    private final SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
+
+    private final int[] divisionIds;
+    private final int[] divisionTeamOffsets;            // NOTE - Team range of division d is [divisionTeamOffsets[d], divisionTeamOffsets[d+1])
+    private final int[] teamIds;
+    private final int[] teamManagerOffsets;
+    private final int[] managerIds;
+    private final int[] managerEmployeeOffsets;
+    private final int[] employeeIds;
+    private final int[] birthdateEpochDays;
+    private final int[] nameOffsets;                    // NOTE - First name of employee e is [nameOffsets[2e], nameOffsets[2e+1]), last name follows it
+    private final char[] names;
+    private final Map<Integer, String> paddedBirthdates;            // NOTE - Birthdate text of the few employees whose CSV had leading zeros, by employee
+
+    private final AtomicReferenceArray<BirthdateSketch> divisionSketches;        // NOTE - Built with the data, which never changes so they stay current
+    private final AtomicReferenceArray<BirthdateSketch> teamSketches;
+    private final AtomicReferenceArray<BirthdateSketch> managerSketches;
+    private volatile BirthdateSketch companySketch;
+
+    private ColumnarSurveyData(Builder builder, int[] divisionIds, int[] divisionTeamOffsets, int[] teamIds, int[] teamManagerOffsets, int[] managerIds, int[] managerEmployeeOffsets,
+            int[] employeeIds, int[] birthdateEpochDays, int[] nameOffsets, char[] names, Map<Integer, String> paddedBirthdates) {
+        super(new String[] {"divisionId", "teamId", "managerId", "employeeId", "lastName", "firstName", "birthdate"});
+        this.sortOrderOfDataOrEmployees = builder.sortOrderOfDataOrEmployees;
+        this.divisionIds = divisionIds;
+        this.divisionTeamOffsets = divisionTeamOffsets;
+        this.teamIds = teamIds;
+        this.teamManagerOffsets = teamManagerOffsets;
+        this.managerIds = managerIds;
+        this.managerEmployeeOffsets = managerEmployeeOffsets;
+        this.employeeIds = employeeIds;
+        this.birthdateEpochDays = birthdateEpochDays;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.paddedBirthdates = paddedBirthdates;
+        this.divisionSketches = new AtomicReferenceArray<>(divisionIds.length);
+        this.teamSketches = new AtomicReferenceArray<>(teamIds.length);
+        this.managerSketches = new AtomicReferenceArray<>(managerIds.length);
+    }
+
+    public Map<Integer, Division> getDivisions() {
+        return new IndexRangeMap<>(divisionIds, 0, divisionIds.length, d -> new Division(this, d));
+    }
+
+    @JsonIgnore
+    public SurveyCSVData.Employee.SortOrder getSortOrder() {
+        return sortOrderOfDataOrEmployees;
+    }
+
+    @JsonIgnore
+    public int getDivisionCount() {
+        return divisionIds.length;
+    }
+    public int getDivisionId(int division) {
+        return divisionIds[division];
+    }
+    public int getFirstTeamOf(int division) {
+        return divisionTeamOffsets[division];
+    }
+    public int getEndTeamOf(int division) {
+        return divisionTeamOffsets[division + 1];
+    }
+
+    @JsonIgnore
+    public int getTeamCount() {
+        return teamIds.length;
+    }
+    public int getTeamId(int team) {
+        return teamIds[team];
+    }
+    public int getFirstManagerOf(int team) {
+        return teamManagerOffsets[team];
+    }
+    public int getEndManagerOf(int team) {
+        return teamManagerOffsets[team + 1];
+    }
+
+    @JsonIgnore
+    public int getManagerCount() {
+        return managerIds.length;
+    }
+    public int getManagerId(int manager) {
+        return managerIds[manager];
+    }
+    public int getFirstEmployeeOf(int manager) {
+        return managerEmployeeOffsets[manager];
+    }
+    public int getEndEmployeeOf(int manager) {
+        return managerEmployeeOffsets[manager + 1];
+    }
+
+    @JsonIgnore
+    public int getEmployeeCount() {
+        return employeeIds.length;
+    }
+    public int getEmployeeId(int employee) {
+        return employeeIds[employee];
+    }
+    public int getBirthdateEpochDay(int employee) {
+        return birthdateEpochDays[employee];
+    }
+    /**
+     * @return the birthdate as it was read, yyyy-M-d unless the CSV padded it
+     */
+    public String getBirthdate(int employee) {
+        String paddedBirthdate = true == paddedBirthdates.isEmpty() ? null : paddedBirthdates.get(employee);
+        return null != paddedBirthdate ? paddedBirthdate : CSVDates.encode(birthdateEpochDays[employee]);
+    }
+    public String getFirstName(int employee) {
+        return new String(names, nameOffsets[2 * employee], nameOffsets[2 * employee + 1] - nameOffsets[2 * employee]);
+    }
+    public String getLastName(int employee) {
+        return new String(names, nameOffsets[2 * employee + 1], nameOffsets[2 * employee + 2] - nameOffsets[2 * employee + 1]);
+    }
+
+    /**
+     * Sum birthdates over a contiguous range of employees, ranges come from the division, team and manager offsets
+     */
+    public long sumOfBirthdateEpochDays(int fromEmployee, int toEmployee) {
+        long sum = 0;
+        for (int e = fromEmployee; e < toEmployee; e++)
+            sum += birthdateEpochDays[e];
+        return sum;
+    }
+
+    /**
+     * @return birthdates of all employees, merged from the divisions
+     */
+    @JsonIgnore
+    public BirthdateSketch getBirthdateSketch() {
+        BirthdateSketch sketch = companySketch;
+        if (null == sketch) {
+            sketch = mergedSketch(0, divisionIds.length, this::getDivisionBirthdateSketch);
+            companySketch = sketch;
+        }
+        return sketch;
+    }
+    public BirthdateSketch getDivisionBirthdateSketch(int division) {
+        return cachedSketch(divisionSketches, division, () -> mergedSketch(getFirstTeamOf(division), getEndTeamOf(division), this::getTeamBirthdateSketch));
+    }
+    public BirthdateSketch getTeamBirthdateSketch(int team) {
+        return cachedSketch(teamSketches, team, () -> mergedSketch(getFirstManagerOf(team), getEndManagerOf(team), this::getManagerBirthdateSketch));
+    }
+    public BirthdateSketch getManagerBirthdateSketch(int manager) {
+        return cachedSketch(managerSketches, manager, () -> BirthdateSketch.of(birthdateEpochDays, getFirstEmployeeOf(manager), getEndEmployeeOf(manager)));
+    }
+
+    private static BirthdateSketch cachedSketch(AtomicReferenceArray<BirthdateSketch> sketches, int index, Supplier<BirthdateSketch> build) {
+        BirthdateSketch sketch = sketches.get(index);
+        if (null == sketch) {
+            sketch = build.get();
+            sketches.set(index, sketch);        // NOTE - Racing builds give equal sketches
+        }
+        return sketch;
+    }
+    private static BirthdateSketch mergedSketch(int from, int to, IntFunction<BirthdateSketch> sketchOf) {
+        List<BirthdateSketch> sketches = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++)
+            sketches.add(sketchOf.apply(i));
+        return BirthdateSketch.merge(sketches);
+    }
+
+    /**
+     * Flyweight view of a division
+     */
+    public final static class Division {
+        private final ColumnarSurveyData data;
+        private final int index;
+
+        private Division(ColumnarSurveyData data, int index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        @JsonIgnore
+        public Integer getId() {
+            return data.divisionIds[index];
+        }
+
+        public Map<Integer, Team> getTeams() {
+            return new IndexRangeMap<>(data.teamIds, data.divisionTeamOffsets[index], data.divisionTeamOffsets[index + 1], t -> new Team(data, t));
+        }
+    }
+
+    /**
+     * Flyweight view of a team
+     */
+    public final static class Team {
+        private final ColumnarSurveyData data;
+        private final int index;
+
+        private Team(ColumnarSurveyData data, int index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        @JsonIgnore
+        public Integer getId() {
+            return data.teamIds[index];
+        }
+
+        public Map<Integer, Manager> getManagers() {
+            return new IndexRangeMap<>(data.managerIds, data.teamManagerOffsets[index], data.teamManagerOffsets[index + 1], m -> new Manager(data, m));
+        }
+    }
+
+    /**
+     * Flyweight view of a manager, employees are already stored in the requested sort order
+     */
+    public final static class Manager {
+        private final ColumnarSurveyData data;
+        private final int index;
+
+        private Manager(ColumnarSurveyData data, int index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        @JsonIgnore
+        public Integer getId() {
+            return data.managerIds[index];
+        }
+
+        public Map<Integer, Employee> getEmployees() {
+            return new IndexRangeMap<>(data.employeeIds, data.managerEmployeeOffsets[index], data.managerEmployeeOffsets[index + 1], e -> new Employee(data, e));
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toString(getEmployees());
+        }
+    }
+
+    /**
+     * Flyweight view of an employee
+     */
+    @JsonPropertyOrder({"id", "firstName", "lastName", "birthdate"})
+    public final static class Employee {
+        private final ColumnarSurveyData data;
+        private final int index;
+
+        private Employee(ColumnarSurveyData data, int index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        public int getId() {
+            return data.employeeIds[index];
+        }
+        public String getFirstName() {
+            return data.getFirstName(index);
+        }
+        public String getLastName() {
+            return data.getLastName(index);
+        }
+        public String getBirthdate() {
+            return data.getBirthdate(index);
+        }
+        @JsonIgnore
+        public LocalDate getBirthdateDateType() {
+            return LocalDate.ofEpochDay(data.birthdateEpochDays[index]);
+        }
+
+        @Override
+        public String toString() {
+            return "(id='" + getId() + "', firstName='" + getFirstName() + "', lastName='" + getLastName() + "', birthdate='" + getBirthdate() + "')";
+        }
+    }
+
+    /**
+     * Read-only map over a range of an id column, values are created on access
+     */
+    private static final class IndexRangeMap<V> extends AbstractMap<Integer, V> {
+        private final int[] ids;
+        private final int from, to;
+        private final IntFunction<V> viewOfIndex;
+
+        IndexRangeMap(int[] ids, int from, int to, IntFunction<V> viewOfIndex) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.viewOfIndex = viewOfIndex;
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key instanceof Integer) {
+                int id = (Integer)key;
+                for (int i = from; i < to; i++) {
+                    if (ids[i] == id)
+                        return viewOfIndex.apply(i);
+                }
+            }
+            return null;
+        }
+        @Override
+        public boolean containsKey(Object key) {
+            return null != get(key);
+        }
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, V>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, V>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, V>> iterator() {
+                    return new Iterator<Map.Entry<Integer, V>>() {
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+                        @Override
+                        public Map.Entry<Integer, V> next() {
+                            if (next >= to)
+                                throw new NoSuchElementException();
+                            int index = next++;
+                            return new AbstractMap.SimpleImmutableEntry<>(ids[index], viewOfIndex.apply(index));
+                        }
+                    };
+                }
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects rows in file order then lays them out by hierarchy, not thread safe, one builder per chunk of the file
+     */
+    public static final class Builder {
+
+        private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;          // NOTE - Some VMs refuse arrays closer to the limit
+
+        private final SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
+        private final CSVData.SortDirection sortDirectionOfEmployees;
+
+        private int rows;
+        private int[] divisionIds = new int[1024], teamIds = new int[1024], managerIds = new int[1024], employeeIds = new int[1024], birthdateEpochDays = new int[1024];
+        private int[] nameOffsets = new int[2 * 1024 + 1];
+        private char[] names = new char[16 * 1024];
+        private final Map<Integer, String> paddedBirthdates = new HashMap<>();         // NOTE - By row
+
+        public Builder(SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees) {
+            this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
+            this.sortDirectionOfEmployees = sortDirectionOfEmployees;
+        }
+
+        /**
+         * @param paddedBirthdate text of the birthdate if the CSV has it with leading zeros, null otherwise
+         */
+        public void addRow(int divisionId, int teamId, int managerId, int employeeId, String firstName, String lastName, int birthdateEpochDay, String paddedBirthdate) {
+            Objects.requireNonNull(firstName); Objects.requireNonNull(lastName);
+            ensureRowCapacity(rows + 1L);
+            divisionIds[rows] = divisionId;
+            teamIds[rows] = teamId;
+            managerIds[rows] = managerId;
+            employeeIds[rows] = employeeId;
+            birthdateEpochDays[rows] = birthdateEpochDay;
+            appendName(2 * rows, firstName);
+            appendName(2 * rows + 1, lastName);
+            if (null != paddedBirthdate)
+                paddedBirthdates.put(rows, paddedBirthdate);
+            rows++;
+        }
+
+        /**
+         * Append the rows of a builder that read later lines of the file, copying its columns and names in bulk
+         */
+        public void addRows(Builder later) {
+            ensureRowCapacity((long)rows + later.rows);
+            int namesLength = nameOffsets[2 * rows], laterNamesLength = later.nameOffsets[2 * later.rows];
+            ensureNameCapacity((long)namesLength + laterNamesLength);
+
+            System.arraycopy(later.divisionIds, 0, divisionIds, rows, later.rows);
+            System.arraycopy(later.teamIds, 0, teamIds, rows, later.rows);
+            System.arraycopy(later.managerIds, 0, managerIds, rows, later.rows);
+            System.arraycopy(later.employeeIds, 0, employeeIds, rows, later.rows);
+            System.arraycopy(later.birthdateEpochDays, 0, birthdateEpochDays, rows, later.rows);
+            System.arraycopy(later.names, 0, names, namesLength, laterNamesLength);
+            for (int slot = 1; slot <= 2 * later.rows; slot++)               // NOTE - Slot 0 of later is 0, the end of our names already
+                nameOffsets[2 * rows + slot] = namesLength + later.nameOffsets[slot];
+            for (Map.Entry<Integer, String> paddedBirthdate : later.paddedBirthdates.entrySet())
+                paddedBirthdates.put(rows + paddedBirthdate.getKey(), paddedBirthdate.getValue());
+            rows += later.rows;
+        }
+
+        private void appendName(int slot, String name) {
+            int start = nameOffsets[slot];
+            ensureNameCapacity((long)start + name.length());
+            name.getChars(0, name.length(), names, start);
+            nameOffsets[slot + 1] = start + name.length();
+        }
+
+        private void ensureRowCapacity(long capacity) {
+            if (capacity <= employeeIds.length)
+                return;
+            int grown = grownLength(employeeIds.length, capacity, MAX_ARRAY_LENGTH / 2 - 1, "rows");        // NOTE - Two name offsets per row
+            divisionIds = Arrays.copyOf(divisionIds, grown);
+            teamIds = Arrays.copyOf(teamIds, grown);
+            managerIds = Arrays.copyOf(managerIds, grown);
+            employeeIds = Arrays.copyOf(employeeIds, grown);
+            birthdateEpochDays = Arrays.copyOf(birthdateEpochDays, grown);
+            nameOffsets = Arrays.copyOf(nameOffsets, 2 * grown + 1);
+        }
+        private void ensureNameCapacity(long capacity) {
+            if (capacity > names.length)
+                names = Arrays.copyOf(names, grownLength(names.length, capacity, MAX_ARRAY_LENGTH, "characters of names"));
+        }
+
+        /**
+         * @return double the length, at least the capacity and at most the limit
+         * @exception IllegalStateException if the capacity is past the limit
+         */
+        private static int grownLength(int length, long capacity, int limit, String of) {
+            if (capacity > limit)
+                throw new IllegalStateException("Survey data of " + capacity + " " + of + " does not fit in an array, the limit is " + limit);
+            return (int)Math.min(limit, Math.max(capacity, 2L * length));
+        }
+        private String nameOf(int slot) {
+            return new String(names, nameOffsets[slot], nameOffsets[slot + 1] - nameOffsets[slot]);
+        }
+
+        /**
+         * Lay out the rows, ORIGINAL keeps first-seen order at every level, the other orders sort levels by id and employees by the sort order,
+         * the first row of a duplicate employee under the same manager wins, the birthdate sketches of every level are built with it
+         */
+        public ColumnarSurveyData build() {
+            boolean original = SurveyCSVData.Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees;
+
+            // Number divisions, teams within divisions and managers within teams in first-seen order
+            LongIndex divisionGroups = new LongIndex(), teamGroups = new LongIndex(), managerGroups = new LongIndex(), employeesSeen = new LongIndex();
+            int[] managerGroupOfRow = new int[rows];
+            GrowableInts divisionGroupIds = new GrowableInts(), teamGroupIds = new GrowableInts(), teamGroupParents = new GrowableInts(), managerGroupIds = new GrowableInts(), managerGroupParents = new GrowableInts();
+            int keptRows = 0;
+            for (int row = 0; row < rows; row++) {
+                int divisionGroup = divisionGroups.indexOf(divisionIds[row], divisionGroupIds.size());
+                if (divisionGroup == divisionGroupIds.size())
+                    divisionGroupIds.add(divisionIds[row]);
+                int teamGroup = teamGroups.indexOf(pack(divisionGroup, teamIds[row]), teamGroupIds.size());
+                if (teamGroup == teamGroupIds.size()) {
+                    teamGroupIds.add(teamIds[row]);
+                    teamGroupParents.add(divisionGroup);
+                }
+                int managerGroup = managerGroups.indexOf(pack(teamGroup, managerIds[row]), managerGroupIds.size());
+                if (managerGroup == managerGroupIds.size()) {
+                    managerGroupIds.add(managerIds[row]);
+                    managerGroupParents.add(teamGroup);
+                }
+                boolean duplicate = employeesSeen.indexOf(pack(managerGroup, employeeIds[row]), row) != row;
+                managerGroupOfRow[row] = duplicate ? -1 : managerGroup;
+                if (false == duplicate)
+                    keptRows++;
+            }
+
+            // Order each level within its parent
+            int[] divisionOrder = identity(divisionGroupIds.size());
+            if (false == original)
+                IndexSort.sort(divisionOrder, 0, divisionOrder.length, (a, b) -> Integer.compare(divisionGroupIds.get(a), divisionGroupIds.get(b)));
+            int[] divisionRank = rankOf(divisionOrder);
+
+            int[] teamOrder = identity(teamGroupIds.size());
+            IndexSort.sort(teamOrder, 0, teamOrder.length, (a, b) -> {
+                int compare = Integer.compare(divisionRank[teamGroupParents.get(a)], divisionRank[teamGroupParents.get(b)]);
+                return 0 != compare || original ? compare : Integer.compare(teamGroupIds.get(a), teamGroupIds.get(b));
+            });
+            int[] teamRank = rankOf(teamOrder);
+
+            int[] managerOrder = identity(managerGroupIds.size());
+            IndexSort.sort(managerOrder, 0, managerOrder.length, (a, b) -> {
+                int compare = Integer.compare(teamRank[managerGroupParents.get(a)], teamRank[managerGroupParents.get(b)]);
+                return 0 != compare || original ? compare : Integer.compare(managerGroupIds.get(a), managerGroupIds.get(b));
+            });
+            int[] managerRank = rankOf(managerOrder);
+
+            // Bucket rows by manager rank, stable so rows keep file order
+            int[] managerEmployeeOffsets = new int[managerOrder.length + 1];
+            for (int row = 0; row < rows; row++) {
+                if (managerGroupOfRow[row] >= 0)
+                    managerEmployeeOffsets[managerRank[managerGroupOfRow[row]] + 1]++;
+            }
+            for (int m = 0; m < managerOrder.length; m++)
+                managerEmployeeOffsets[m + 1] += managerEmployeeOffsets[m];
+            int[] rowOrder = new int[keptRows];
+            int[] fill = Arrays.copyOf(managerEmployeeOffsets, managerOrder.length);
+            for (int row = 0; row < rows; row++) {
+                if (managerGroupOfRow[row] >= 0)
+                    rowOrder[fill[managerRank[managerGroupOfRow[row]]]++] = row;
+            }
+            if (false == original) {
+                IntBinaryOperator employeeComparator = employeeComparator();
+                for (int m = 0; m < managerOrder.length; m++)
+                    IndexSort.sort(rowOrder, managerEmployeeOffsets[m], managerEmployeeOffsets[m + 1], employeeComparator);
+            }
+
+            // Lay out the levels and columns
+            int[] layoutDivisionIds = new int[divisionOrder.length];
+            int[] divisionTeamOffsets = new int[divisionOrder.length + 1];
+            for (int d = 0; d < divisionOrder.length; d++)
+                layoutDivisionIds[d] = divisionGroupIds.get(divisionOrder[d]);
+            int[] layoutTeamIds = new int[teamOrder.length];
+            int[] teamManagerOffsets = new int[teamOrder.length + 1];
+            for (int t = 0; t < teamOrder.length; t++) {
+                layoutTeamIds[t] = teamGroupIds.get(teamOrder[t]);
+                divisionTeamOffsets[divisionRank[teamGroupParents.get(teamOrder[t])] + 1]++;
+            }
+            int[] layoutManagerIds = new int[managerOrder.length];
+            for (int m = 0; m < managerOrder.length; m++) {
+                layoutManagerIds[m] = managerGroupIds.get(managerOrder[m]);
+                teamManagerOffsets[teamRank[managerGroupParents.get(managerOrder[m])] + 1]++;
+            }
+            for (int d = 0; d < divisionOrder.length; d++)
+                divisionTeamOffsets[d + 1] += divisionTeamOffsets[d];
+            for (int t = 0; t < teamOrder.length; t++)
+                teamManagerOffsets[t + 1] += teamManagerOffsets[t];
+
+            int[] layoutEmployeeIds = new int[keptRows];
+            int[] layoutBirthdateEpochDays = new int[keptRows];
+            int[] layoutNameOffsets = new int[2 * keptRows + 1];
+            char[] layoutNames = new char[nameOffsets[2 * rows]];
+            Map<Integer, String> layoutPaddedBirthdates = new HashMap<>();
+            int nameLength = 0;
+            for (int e = 0; e < keptRows; e++) {
+                int row = rowOrder[e];
+                layoutEmployeeIds[e] = employeeIds[row];
+                layoutBirthdateEpochDays[e] = birthdateEpochDays[row];
+                if (false == paddedBirthdates.isEmpty() && true == paddedBirthdates.containsKey(row))
+                    layoutPaddedBirthdates.put(e, paddedBirthdates.get(row));
+                int nameStart = nameOffsets[2 * row], nameEnd = nameOffsets[2 * row + 2];
+                System.arraycopy(names, nameStart, layoutNames, nameLength, nameEnd - nameStart);
+                layoutNameOffsets[2 * e] = nameLength;
+                layoutNameOffsets[2 * e + 1] = nameLength + nameOffsets[2 * row + 1] - nameStart;
+                nameLength += nameEnd - nameStart;
+                layoutNameOffsets[2 * e + 2] = nameLength;
+            }
+
+            ColumnarSurveyData data = new ColumnarSurveyData(this, layoutDivisionIds, divisionTeamOffsets, layoutTeamIds, teamManagerOffsets, layoutManagerIds, managerEmployeeOffsets,
+                    layoutEmployeeIds, layoutBirthdateEpochDays, layoutNameOffsets, Arrays.copyOf(layoutNames, nameLength), layoutPaddedBirthdates);
+            data.getBirthdateSketch();                  // NOTE - Summaries of every level are built at parse time, merged from the managers up
+            return data;
+        }
+
+        private IntBinaryOperator employeeComparator() {
+            boolean descending = CSVData.SortDirection.DESCENDING == sortDirectionOfEmployees;
+            return (a, b) -> {
+                int compare;
+                switch (sortOrderOfDataOrEmployees) {
+                    case LASTNAME:
+                        compare = compareNames(2 * a + 1, 2 * b + 1);
+                        break;
+                    case FIRSTNAME:
+                        compare = compareNames(2 * a, 2 * b);
+                        break;
+                    case BIRTHDATE:
+                        compare = Integer.compare(birthdateEpochDays[a], birthdateEpochDays[b]);
+                        break;
+                    default:
+                        compare = 0;
+                        break;
+                }
+                if (descending)
+                    compare = -compare;
+                if (0 == compare) {
+                    compare = Integer.compare(employeeIds[a], employeeIds[b]);     // NOTE - Ties are ordered by id so no employee is lost
+                    if (descending && SurveyCSVData.Employee.SortOrder.ID == sortOrderOfDataOrEmployees)
+                        compare = -compare;
+                }
+                return compare;
+            };
+        }
+
+        private int compareNames(int slotA, int slotB) {
+            int a = nameOffsets[slotA], aEnd = nameOffsets[slotA + 1], b = nameOffsets[slotB], bEnd = nameOffsets[slotB + 1];
+            while (a < aEnd && b < bEnd) {
+                int compare = names[a++] - names[b++];
+                if (0 != compare)
+                    return compare;
+            }
+            return (aEnd - a) - (bEnd - b);
+        }
+
+        private static long pack(int high, int low) {
+            return ((long)high << 32) | (low & 0xffffffffL);
+        }
+        private static int[] identity(int size) {
+            int[] indices = new int[size];
+            for (int i = 0; i < size; i++)
+                indices[i] = i;
+            return indices;
+        }
+        private static int[] rankOf(int[] order) {
+            int[] rank = new int[order.length];
+            for (int i = 0; i < order.length; i++)
+                rank[order[i]] = i;
+            return rank;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static final class GrowableInts {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+        int get(int index) {
+            return values[index];
+        }
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Open addressing map from long keys to int values, used to number groups without boxing
+     */
+    private static final class LongIndex {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        /**
+         * @return the value already stored for the key, or the given value after storing it
+         */
+        int indexOf(long key, int valueIfAbsent) {
+            if (2 * (size + 1) > keys.length)
+                grow();
+            int slot = slotOf(key, keys, used);
+            if (used[slot])
+                return values[slot];
+            used[slot] = true;
+            keys[slot] = key;
+            values[slot] = valueIfAbsent;
+            size++;
+            return valueIfAbsent;
+        }
+
+        private static int slotOf(long key, long[] keys, boolean[] used) {
+            int mask = keys.length - 1;
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int slot = (int)(hash ^ (hash >>> 32)) & mask;
+            while (used[slot] && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slotOf(oldKeys[i], keys, used);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
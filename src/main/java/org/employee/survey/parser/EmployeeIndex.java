@@ -0,0 +1,116 @@
+package org.employee.survey.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee;
+
+/**
+ * Immutable secondary index of the employees below a node, sorted once by a key so a range of keys is found by binary search
+ *
+ * A query costs the log of the employees indexed plus the matches consumed, the matches are walked lazily in key order.
+ */
+abstract class EmployeeIndex {
+
+    final Employee[] employees;
+
+    private EmployeeIndex(Employee[] employees) {
+        this.employees = employees;
+    }
+
+    /**
+     * @return employees[from, to), removal is not supported
+     */
+    final Iterator<Employee> iterator(int from, int to) {
+        if (to <= from)
+            return Collections.emptyIterator();
+        return Collections.unmodifiableList(Arrays.asList(employees).subList(from, to)).iterator();
+    }
+
+    /**
+     * Employees in ascending birthdate order, ties keep the order they were gathered in
+     */
+    static final class ByBirthdate extends EmployeeIndex {
+
+        private final int[] epochDays;
+
+        private ByBirthdate(Employee[] employees) {
+            super(employees);
+            epochDays = new int[employees.length];
+            for (int i = 0; i < employees.length; i++)
+                epochDays[i] = (int)employees[i].getBirthdateEpochDay();
+        }
+
+        static ByBirthdate of(Stream<Employee> employees) {
+            Employee[] sorted = employees.toArray(Employee[]::new);
+            Arrays.sort(sorted, Comparator.comparingLong(Employee::getBirthdateEpochDay));
+            return new ByBirthdate(sorted);
+        }
+
+        /**
+         * @return employees born on or after the first day and on or before the last
+         */
+        Iterator<Employee> bornBetween(long firstEpochDay, long lastEpochDay) {
+            if (lastEpochDay < firstEpochDay)
+                return Collections.emptyIterator();
+            return iterator(firstAtOrAfter(firstEpochDay), firstAtOrAfter(lastEpochDay + 1));
+        }
+
+        private int firstAtOrAfter(long epochDay) {
+            int low = 0, high = epochDays.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (epochDays[middle] < epochDay)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Employees in ascending last name order, compared as String.compareTo does so the names sharing a prefix are adjacent,
+     * employees without a parsed last name are never found
+     */
+    static final class ByLastName extends EmployeeIndex {
+
+        private ByLastName(Employee[] employees) {
+            super(employees);
+        }
+
+        static ByLastName of(Stream<Employee> employees) {
+            Employee[] sorted = employees.filter(employee -> null != employee.getLastName()).toArray(Employee[]::new);
+            Arrays.sort(sorted, Comparator.comparing(Employee::getLastName));
+            return new ByLastName(sorted);
+        }
+
+        /**
+         * @return employees whose last name starts with the prefix, case-sensitive, everyone for an empty prefix
+         */
+        Iterator<Employee> lastNameStartingWith(String prefix) {
+            int low = 0, high = employees.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (employees[middle].getLastName().compareTo(prefix) < 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            int from = low;
+
+            high = employees.length;                // NOTE - From here on names start with the prefix until the first that does not
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (true == employees[middle].getLastName().startsWith(prefix))
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return iterator(from, low);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.employee.survey.parser;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.AgeRollup;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData.Employee;
+
+/**
+ * Queries over the employees below one node of survey data, the birthdate sketch and the secondary indexes are built on first use
+ * and kept until the node's rollup changes
+ */
+final class EmployeeScope {
+
+    private final AgeRollup ageRollup;
+    private final Supplier<Stream<Employee>> employees;
+    private final Supplier<BirthdateSketch> sketch;
+
+    private final VersionedCache<BirthdateSketch> birthdateSketch = new VersionedCache<>();
+    private final VersionedCache<EmployeeIndex.ByBirthdate> birthdateIndex = new VersionedCache<>();
+    private final VersionedCache<EmployeeIndex.ByLastName> lastNameIndex = new VersionedCache<>();
+
+    /**
+     * @param employees streams the employees below the node
+     * @param sketch builds the sketch of the node, e.g. by merging the sketches of its children
+     */
+    EmployeeScope(AgeRollup ageRollup, Supplier<Stream<Employee>> employees, Supplier<BirthdateSketch> sketch) {
+        this.ageRollup = ageRollup;
+        this.employees = employees;
+        this.sketch = sketch;
+    }
+
+    Stream<Employee> employees() {
+        return employees.get();
+    }
+
+    BirthdateSketch getBirthdateSketch() {
+        return birthdateSketch.get(ageRollup.getChanges(), sketch);
+    }
+
+    Iterator<Employee> findEmployeesBornBetween(LocalDate firstBirthdate, LocalDate lastBirthdate) {
+        return birthdateIndex.get(ageRollup.getChanges(), () -> EmployeeIndex.ByBirthdate.of(employees())).bornBetween(firstBirthdate.toEpochDay(), lastBirthdate.toEpochDay());
+    }
+
+    Iterator<Employee> findEmployeesWithLastNamePrefix(String prefix) {
+        Objects.requireNonNull(prefix);
+        return lastNameIndex.get(ageRollup.getChanges(), () -> EmployeeIndex.ByLastName.of(employees())).lastNameStartingWith(prefix);
+    }
+}
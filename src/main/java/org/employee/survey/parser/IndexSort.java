@@ -0,0 +1,53 @@
+package org.employee.survey.parser;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Stable sort of primitive int indices with a comparator over pre-extracted keys, avoids boxing to Integer[]
+ *
+ */
+final class IndexSort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private IndexSort() {
+    }
+
+    /**
+     * Sort indices[from, to) so that comparator(indices[i], indices[i+1]) <= 0, equal indices keep their relative order
+     */
+    static void sort(int[] indices, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2)
+            return;
+        int[] buffer = new int[to - from];
+        mergeSort(indices, from, to, buffer, comparator);
+    }
+
+    private static void mergeSort(int[] indices, int from, int to, int[] buffer, IntBinaryOperator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int index = indices[i];
+                int j = i - 1;
+                while (j >= from && comparator.applyAsInt(indices[j], index) > 0) {
+                    indices[j + 1] = indices[j];
+                    j--;
+                }
+                indices[j + 1] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(indices, from, middle, buffer, comparator);
+        mergeSort(indices, middle, to, buffer, comparator);
+        if (comparator.applyAsInt(indices[middle - 1], indices[middle]) <= 0)
+            return;
+
+        System.arraycopy(indices, from, buffer, 0, middle - from);
+        int left = 0, leftEnd = middle - from, right = middle, out = from;
+        while (left < leftEnd && right < to)
+            indices[out++] = comparator.applyAsInt(buffer[left], indices[right]) <= 0 ? buffer[left++] : indices[right++];
+        while (left < leftEnd)
+            indices[out++] = buffer[left++];
+    }
+}
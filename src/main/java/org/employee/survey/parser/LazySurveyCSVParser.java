@@ -0,0 +1,158 @@
+package org.employee.survey.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.*;
+
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.csv.CSVByteTokenizer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.csv.CSVStringPool;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.metrics.SurveyMetrics;
+
+/**
+ * Class for indexing CSV data related to employee survey without building it, rows are decoded from the file when first accessed
+ *
+ * The scan decodes only the ids of each row and records where the row starts, names and birthdates are checked when a row is decoded.
+ */
+public final class LazySurveyCSVParser extends CSVParser implements Parser {
+
+    private static final short MIN_TOKENS_PER_LINE = 7;
+    private static final String SEPERATOR_OF_TOKENS = ",";
+    private static final int NAME_POOL_SIZE = 4096;
+
+    private static final int MAX_LINE_BYTES = 64 * 1024;                 // NOTE - A row starting this close to the end of a mapped window is read from a new window
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final File csvFile;
+    private final SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
+    private final CSVData.SortDirection sortDirectionOfEmployees;
+    private final long cacheBytes;
+
+    /**
+     * @param cacheBytes limit of the estimated size of the divisions kept once decoded, 0 decodes them on every access
+     */
+    public LazySurveyCSVParser(File csvFile, SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees, long cacheBytes) {
+        super(csvFile, MIN_TOKENS_PER_LINE, SEPERATOR_OF_TOKENS);
+        this.csvFile = csvFile;
+        this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
+        this.sortDirectionOfEmployees = sortDirectionOfEmployees;
+        this.cacheBytes = cacheBytes;
+    }
+
+    @Override
+    public Optional<CSVData> parse() throws MalformedCSVException {
+        if (false == (fileExists() && fileIsCorrectlyFormatted()))
+            return Optional.empty();
+
+        SurveyMetrics metrics = SurveyMetrics.global();
+        long sizeOfFile = csvFile.length(), lastModified = csvFile.lastModified();          // NOTE - Taken before the scan so a file changed meanwhile is refused on decode
+        SurveyMetrics.Timer parseTimer = metrics.start(SurveyMetrics.Stage.PARSE);
+        try (FileChannel channel = openFileChannel()) {
+            long[] chunkOffsets = parallelChunkOffsets(channel);
+
+            List<LazySurveyData.Builder> chunkBuilders = IntStream.range(0, chunkOffsets.length - 1).parallel()
+                    .mapToObj(chunk -> scanMappedChunk(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1]))
+                    .collect(toList());
+
+            LazySurveyData.Builder builder = chunkBuilders.isEmpty() ? new LazySurveyData.Builder() : chunkBuilders.get(0);
+            SurveyMetrics.Timer buildTimer = metrics.start(SurveyMetrics.Stage.HIERARCHY_BUILD);
+            try {
+                for (int chunk = 1; chunk < chunkBuilders.size(); chunk++)
+                    builder.addRows(chunkBuilders.get(chunk));
+                return Optional.of(builder.build(this, sizeOfFile, lastModified, new ResultCache(cacheBytes)));
+            }
+            finally {
+                buildTimer.close();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            throw new MalformedCSVException("FAILED to parse CSV file", e);
+        }
+        finally {
+            parseTimer.close();
+        }
+    }
+
+    public SurveyCSVParser.SurveyCSVData.Employee.SortOrder getSortOrder() {
+        return sortOrderOfDataOrEmployees;
+    }
+
+    private LazySurveyData.Builder scanMappedChunk(FileChannel channel, long from, long to) {
+        LazySurveyData.Builder builder = new LazySurveyData.Builder();
+        SurveyMetrics metrics = SurveyMetrics.global();
+        long allocationMark = metrics.allocationMark(), startNanos = System.nanoTime(), rows = 0, skippedRows = 0;
+        try {
+            CSVByteTokenizer tokenizer = new CSVByteTokenizer(mapFileRegion(channel, from, to), SEPERATOR_OF_TOKENS.charAt(0), MIN_TOKENS_PER_LINE);
+            while (tokenizer.nextLine()) {
+                if (tokenizer.fieldCount() >= MIN_TOKENS_PER_LINE) {
+                    builder.addRow(from + tokenizer.lineStart(), tokenizer.intField(0), tokenizer.intField(1), tokenizer.intField(2), tokenizer.intField(3));
+                    rows++;
+                }
+                else
+                    skippedRows++;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            metrics.addNanos(SurveyMetrics.Stage.TOKENIZE, rows, System.nanoTime() - startNanos);
+            metrics.add(SurveyMetrics.Counter.ROWS_PARSED, rows);
+            metrics.add(SurveyMetrics.Counter.SKIPPED_ROWS, skippedRows);
+            metrics.add(SurveyMetrics.Counter.BYTES_PARSED, to - from);
+            metrics.addAllocation(SurveyMetrics.Stage.PARSE, allocationMark);
+        }
+        return builder;
+    }
+
+    /**
+     * Decode the rows starting at the offsets into a new tree, in the order given, the first row of a duplicate employee wins
+     * @param rowStarts ascending offsets of rows found by the scan
+     * @exception IllegalStateException if the file is not the one scanned
+     * @exception UncheckedIOException if the file can not be read
+     */
+    SurveyCSVParser.SurveyCSVData decode(long[] rowStarts, int from, int to, long sizeOfFile, long lastModified) {
+        if (csvFile.length() != sizeOfFile || csvFile.lastModified() != lastModified)
+            throw new IllegalStateException("CSV file has changed since it was scanned, a new parse is required");
+
+        SurveyCSVParser.SurveyCSVData data = new SurveyCSVParser.SurveyCSVData(sortOrderOfDataOrEmployees);
+        SurveyMetrics.Timer decodeTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.TOKENIZE);
+        try (FileChannel channel = openFileChannel()) {
+            CSVStringPool namePool = new CSVStringPool(NAME_POOL_SIZE);
+            CSVByteTokenizer tokenizer = null;
+            long windowStart = 0, windowEnd = 0;
+            for (int row = from; row < to; row++) {
+                long rowStart = rowStarts[row];
+                if (null == tokenizer || rowStart < windowStart || (rowStart + MAX_LINE_BYTES > windowEnd && windowEnd < sizeOfFile)) {
+                    windowStart = rowStart;
+                    windowEnd = Math.min(sizeOfFile, rowStart + WINDOW_BYTES);
+                    MappedByteBuffer window = mapFileRegion(channel, windowStart, windowEnd);         // NOTE - Rows read again, not counted as parsed
+                    tokenizer = new CSVByteTokenizer(window, SEPERATOR_OF_TOKENS.charAt(0), MIN_TOKENS_PER_LINE);
+                }
+                tokenizer.seek((int)(rowStart - windowStart));
+                if (false == tokenizer.nextLine() || tokenizer.fieldCount() < MIN_TOKENS_PER_LINE)
+                    throw new IllegalStateException("CSV row at " + rowStart + " is not the one scanned");
+                SurveyCSVParser.buildSurveyData(tokenizer.intField(0), tokenizer.intField(1), tokenizer.intField(2), tokenizer.intField(3),
+                        tokenizer.stringField(4, namePool), tokenizer.stringField(5, namePool), tokenizer.epochDayField(6), tokenizer.paddedDateField(6), data, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("FAILED to read CSV rows", e);
+        }
+        finally {
+            decodeTimer.close();
+        }
+        return data.freeze();
+    }
+}
@@ -0,0 +1,263 @@
+package org.employee.survey.parser;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import org.employee.survey.cache.ResultCache;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Class representing survey data as an index of where each row starts in the CSV file, grouped by division
+ *
+ * Only the ids of rows are held, a division is decoded from the file into a frozen SurveyCSVData.Division when first accessed and kept
+ * in a ResultCache, so divisions not used recently are evicted and decoded again on the next access.
+ * The file must not change while the data is in use, decoding a changed file fails with an IllegalStateException.
+ */
+public final class LazySurveyData extends CSVData {
+
+    static final long ESTIMATED_ROW_BYTES = 160;                // NOTE - Rough size of an employee with its names and its share of the maps above it
+    private static final String DIVISION_QUERY = "lazy.division";
+
+    private final LazySurveyCSVParser parser;
+    private final long sizeOfFile;
+    private final long lastModified;
+    private final ResultCache cache;
+    private final Object source = new Object();                 // NOTE - Token in keys, so cached divisions do not keep the index reachable
+
+    private final int[] divisionIds;
+    private final int[] divisionRowOffsets;                     // NOTE - Rows of division d are [divisionRowOffsets[d], divisionRowOffsets[d+1]), in file order
+    private final Map<Integer, Integer> divisionIndexes;
+    private final long[] rowStarts;
+    private final int[] teamIds;
+    private final int[] managerIds;
+    private final int[] employeeIds;
+
+    private LazySurveyData(LazySurveyCSVParser parser, long sizeOfFile, long lastModified, ResultCache cache, int[] divisionIds, int[] divisionRowOffsets,
+            long[] rowStarts, int[] teamIds, int[] managerIds, int[] employeeIds) {
+        super(new String[] {"divisionId", "teamId", "managerId", "employeeId", "lastName", "firstName", "birthdate"});
+        this.parser = parser;
+        this.sizeOfFile = sizeOfFile;
+        this.lastModified = lastModified;
+        this.cache = Objects.requireNonNull(cache);
+        this.divisionIds = divisionIds;
+        this.divisionRowOffsets = divisionRowOffsets;
+        this.rowStarts = rowStarts;
+        this.teamIds = teamIds;
+        this.managerIds = managerIds;
+        this.employeeIds = employeeIds;
+        this.divisionIndexes = new HashMap<>(divisionIds.length * 2);
+        for (int division = 0; division < divisionIds.length; division++)
+            divisionIndexes.put(divisionIds[division], division);
+    }
+
+    /**
+     * @return divisions in the order of the parsed data, each decoded when its value is taken
+     */
+    public Map<Integer, SurveyCSVData.Division> getDivisions() {
+        return new DivisionMap(this);
+    }
+
+    /**
+     * @return the division, decoded from the file unless still cached
+     * @exception IllegalStateException if the file has changed since it was parsed
+     */
+    public Optional<SurveyCSVData.Division> getDivision(Integer divisionId) {
+        Integer division = divisionIndexes.get(divisionId);
+        if (null == division)
+            return Optional.empty();
+        int from = divisionRowOffsets[division], to = divisionRowOffsets[division + 1];
+        return Optional.ofNullable(cache.get(new ResultCache.Key(source, 0, DIVISION_QUERY, divisionId), decoded -> ESTIMATED_ROW_BYTES * (to - from),
+                () -> parser.decode(rowStarts, from, to, sizeOfFile, lastModified).getDivisions().get(divisionId)));
+    }
+
+    /**
+     * Decode a single employee without decoding the division, the first row of the employee wins as it does in a full parse
+     * @exception IllegalStateException if the file has changed since it was parsed
+     */
+    public Optional<SurveyCSVData.Employee> getEmployee(int divisionId, int teamId, int managerId, int employeeId) {
+        Integer division = divisionIndexes.get(divisionId);
+        if (null == division)
+            return Optional.empty();
+        for (int row = divisionRowOffsets[division]; row < divisionRowOffsets[division + 1]; row++) {
+            if (teamIds[row] == teamId && managerIds[row] == managerId && employeeIds[row] == employeeId) {
+                SurveyCSVData decoded = parser.decode(rowStarts, row, row + 1, sizeOfFile, lastModified);
+                return Optional.of(decoded.getDivisions().get(divisionId).getTeams().get(teamId).getManagers().get(managerId).getEmployees().get(employeeId));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Drop every cached division, e.g. once the data is replaced by a new parse
+     */
+    public void invalidate() {
+        cache.invalidate(source);
+    }
+
+    @JsonIgnore
+    public ResultCache getCache() {
+        return cache;
+    }
+    @JsonIgnore
+    public SurveyCSVData.Employee.SortOrder getSortOrder() {
+        return parser.getSortOrder();
+    }
+    @JsonIgnore
+    public int getDivisionCount() {
+        return divisionIds.length;
+    }
+    @JsonIgnore
+    public int getRowCount() {
+        return rowStarts.length;
+    }
+
+    private static final class DivisionMap extends AbstractMap<Integer, SurveyCSVData.Division> {
+
+        private final LazySurveyData data;
+
+        private DivisionMap(LazySurveyData data) {
+            this.data = data;
+        }
+
+        @Override
+        public SurveyCSVData.Division get(Object key) {
+            return key instanceof Integer ? data.getDivision((Integer)key).orElse(null) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return data.divisionIndexes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return data.divisionIds.length;
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, SurveyCSVData.Division>> entrySet() {
+            return new AbstractSet<Map.Entry<Integer, SurveyCSVData.Division>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, SurveyCSVData.Division>> iterator() {
+                    return new Iterator<Map.Entry<Integer, SurveyCSVData.Division>>() {
+                        private int division;
+
+                        @Override
+                        public boolean hasNext() {
+                            return division < data.divisionIds.length;
+                        }
+
+                        @Override
+                        public Map.Entry<Integer, SurveyCSVData.Division> next() {
+                            if (false == hasNext())
+                                throw new NoSuchElementException();
+                            Integer divisionId = data.divisionIds[division++];
+                            return new AbstractMap.SimpleImmutableEntry<>(divisionId, data.getDivision(divisionId).get());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return data.divisionIds.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Class collecting rows in file order, chunks scanned in parallel are concatenated with addRows
+     */
+    static final class Builder {
+
+        private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;          // NOTE - Some VMs refuse arrays closer to the limit
+
+        private long[] rowStarts = new long[1024];
+        private int[] divisionIds = new int[1024];
+        private int[] teamIds = new int[1024];
+        private int[] managerIds = new int[1024];
+        private int[] employeeIds = new int[1024];
+        private int rows;
+
+        void addRow(long rowStart, int divisionId, int teamId, int managerId, int employeeId) {
+            ensureCapacity(rows + 1L);
+            rowStarts[rows] = rowStart;
+            divisionIds[rows] = divisionId;
+            teamIds[rows] = teamId;
+            managerIds[rows] = managerId;
+            employeeIds[rows] = employeeId;
+            rows++;
+        }
+
+        void addRows(Builder later) {
+            ensureCapacity((long)rows + later.rows);
+            System.arraycopy(later.rowStarts, 0, rowStarts, rows, later.rows);
+            System.arraycopy(later.divisionIds, 0, divisionIds, rows, later.rows);
+            System.arraycopy(later.teamIds, 0, teamIds, rows, later.rows);
+            System.arraycopy(later.managerIds, 0, managerIds, rows, later.rows);
+            System.arraycopy(later.employeeIds, 0, employeeIds, rows, later.rows);
+            rows += later.rows;
+        }
+
+        /**
+         * Group rows by division with a stable counting sort, divisions in first seen order for ORIGINAL data, by ascending id otherwise
+         */
+        LazySurveyData build(LazySurveyCSVParser parser, long sizeOfFile, long lastModified, ResultCache cache) {
+            Map<Integer, Integer> rowsOfDivisions = new LinkedHashMap<>();
+            for (int row = 0; row < rows; row++)
+                rowsOfDivisions.merge(divisionIds[row], 1, Integer::sum);
+
+            int[] orderedDivisionIds = rowsOfDivisions.keySet().stream().mapToInt(Integer::intValue).toArray();
+            if (SurveyCSVData.Employee.SortOrder.ORIGINAL != parser.getSortOrder())
+                Arrays.sort(orderedDivisionIds);
+
+            Map<Integer, Integer> indexOfDivisions = new HashMap<>(orderedDivisionIds.length * 2);
+            int[] divisionRowOffsets = new int[orderedDivisionIds.length + 1];
+            for (int division = 0; division < orderedDivisionIds.length; division++) {
+                indexOfDivisions.put(orderedDivisionIds[division], division);
+                divisionRowOffsets[division + 1] = divisionRowOffsets[division] + rowsOfDivisions.get(orderedDivisionIds[division]);
+            }
+
+            int[] nextRowOfDivisions = Arrays.copyOf(divisionRowOffsets, orderedDivisionIds.length);
+            long[] groupedRowStarts = new long[rows];
+            int[] groupedTeamIds = new int[rows], groupedManagerIds = new int[rows], groupedEmployeeIds = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                int grouped = nextRowOfDivisions[indexOfDivisions.get(divisionIds[row])]++;
+                groupedRowStarts[grouped] = rowStarts[row];
+                groupedTeamIds[grouped] = teamIds[row];
+                groupedManagerIds[grouped] = managerIds[row];
+                groupedEmployeeIds[grouped] = employeeIds[row];
+            }
+            return new LazySurveyData(parser, sizeOfFile, lastModified, cache, orderedDivisionIds, divisionRowOffsets, groupedRowStarts, groupedTeamIds, groupedManagerIds, groupedEmployeeIds);
+        }
+
+        /**
+         * Grow to double the length, at least the capacity and at most the array limit
+         * @exception IllegalStateException if the capacity is past the limit
+         */
+        private void ensureCapacity(long capacity) {
+            if (capacity <= rowStarts.length)
+                return;
+            if (capacity > MAX_ARRAY_LENGTH)
+                throw new IllegalStateException("Survey data of " + capacity + " rows does not fit in an array, the limit is " + MAX_ARRAY_LENGTH);
+            int grown = (int)Math.min(MAX_ARRAY_LENGTH, Math.max(capacity, 2L * rowStarts.length));
+            rowStarts = Arrays.copyOf(rowStarts, grown);
+            divisionIds = Arrays.copyOf(divisionIds, grown);
+            teamIds = Arrays.copyOf(teamIds, grown);
+            managerIds = Arrays.copyOf(managerIds, grown);
+            employeeIds = Arrays.copyOf(employeeIds, grown);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.employee.survey.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.metrics.SurveyMetrics;
+
+/**
+ * Class for loading survey data from a binary snapshot of an unchanged CSV, parsing the CSV and refreshing the snapshot otherwise
+ *
+ */
+public final class SnapshotSurveyCSVParser extends CSVParser implements Parser {
+
+    private static final short MIN_TOKENS_PER_LINE = 7;
+    private static final String SEPERATOR_OF_TOKENS = ",";
+
+    private final File csvFile;
+    private final File snapshotFile;
+    private final SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
+    private final CSVData.SortDirection sortDirectionOfEmployees;
+
+    public SnapshotSurveyCSVParser(File csvFile, File snapshotFile, SurveyCSVParser.SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees) {
+        super(csvFile, MIN_TOKENS_PER_LINE, SEPERATOR_OF_TOKENS);
+        this.csvFile = csvFile;
+        this.snapshotFile = snapshotFile;
+        this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
+        this.sortDirectionOfEmployees = sortDirectionOfEmployees;
+    }
+
+    @Override
+    public Optional<CSVData> parse() throws MalformedCSVException {
+        if (false == (fileExists() && fileIsCorrectlyFormatted()))
+            return Optional.empty();
+
+        Optional<SurveyCSVParser.SurveyCSVData> snapshotData;
+        SurveyMetrics.Timer readTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.FILE_READ);        // NOTE - A parse of the CSV is timed as PARSE by its own parser
+        try {
+            snapshotData = SurveyCSVSnapshot.read(snapshotFile, csvFile, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+        }
+        finally {
+            readTimer.close();
+        }
+        if (true == snapshotData.isPresent())
+            return Optional.of(snapshotData.get());
+
+        long csvSize = csvFile.length(), csvLastModified = csvFile.lastModified();      // NOTE - Taken before parsing so a CSV changed meanwhile leaves a stale snapshot
+        Optional<CSVData> csvData = new SurveyCSVParser(csvFile, sortOrderOfDataOrEmployees, sortDirectionOfEmployees, CSVParser.Ingestion.MAPPED).parse();
+        if (true == csvData.isPresent()) {
+            try {
+                SurveyCSVSnapshot.write((SurveyCSVParser.SurveyCSVData)csvData.get(), csvSize, csvLastModified, snapshotFile);
+            }
+            catch (IOException e) {
+                // NOTE - Not fatal, the next run parses the CSV again
+            }
+        }
+        return csvData;
+    }
+}
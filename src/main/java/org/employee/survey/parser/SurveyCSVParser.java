@@ -1,24 +1,45 @@
 package org.employee.survey.parser;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.employee.survey.csv.CSVByteTokenizer;
 import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVDates;
 import org.employee.survey.csv.CSVParser;
+import org.employee.survey.csv.CSVStringPool;
 import org.employee.survey.csv.Parser;
 import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.metrics.SurveyMetrics;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -32,13 +53,30 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
 
     private final SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees;
     private final CSVData.SortDirection sortDirectionOfEmployees;
+    private final CSVParser.Ingestion ingestion;
+    private final Set<SurveyCSVData.Column> columns;
+    private final boolean firstNames, lastNames;
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-M-d");
+    private static final int NAME_POOL_SIZE = 1 << 16;           // NOTE - Distinct first and last names shared per parse, later ones are kept as they are
 
     public SurveyCSVParser(File csvFile, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees) {
+        this(csvFile, sortOrderOfDataOrEmployees, sortDirectionOfEmployees, CSVParser.Ingestion.STREAMED);
+    }
+    public SurveyCSVParser(File csvFile, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees, CSVParser.Ingestion ingestion) {
+        this(csvFile, sortOrderOfDataOrEmployees, sortDirectionOfEmployees, ingestion, EnumSet.allOf(SurveyCSVData.Column.class));
+    }
+    /**
+     * @param columns needed by the caller, the others are skipped by the tokenizer and absent from the data, ids and birthdate are always parsed
+     * as well as the name the employees are sorted by
+     */
+    public SurveyCSVParser(File csvFile, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees, CSVParser.Ingestion ingestion, Set<SurveyCSVData.Column> columns) {
         super(csvFile, MIN_TOKENS_PER_LINE, SEPERATOR_OF_TOKENS);
         this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
         this.sortDirectionOfEmployees = sortDirectionOfEmployees;
+        this.ingestion = ingestion;
+        this.columns = SurveyCSVData.Column.projection(columns, sortOrderOfDataOrEmployees);
+        this.firstNames = this.columns.contains(SurveyCSVData.Column.FIRST_NAME);
+        this.lastNames = this.columns.contains(SurveyCSVData.Column.LAST_NAME);
     }
 
     @Override
@@ -46,25 +84,267 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
         SurveyCSVData csvDataParsed = null;
 
         if (fileExists() && fileIsCorrectlyFormatted()) {
-            List<String> linesOfCSV = fileLines();
-            SurveyCSVData csvData = new SurveyCSVData(sortOrderOfDataOrEmployees);
+            SurveyCSVData csvData = new SurveyCSVData(sortOrderOfDataOrEmployees, columns);
+            CSVStringPool namePool = new CSVStringPool(NAME_POOL_SIZE);
+            SurveyMetrics metrics = SurveyMetrics.global();
+            SurveyMetrics.Timer parseTimer = metrics.start(SurveyMetrics.Stage.PARSE);
             try {
-                if (SurveyCSVData.Employee.SortOrder.ORIGINAL != sortOrderOfDataOrEmployees)
-                    linesOfCSV.parallelStream().forEach(l -> processLineOfCSV(l, csvData, sortOrderOfDataOrEmployees, sortDirectionOfEmployees));       
-                else
-                    linesOfCSV.stream().forEach(l -> processLineOfCSV(l, csvData, sortOrderOfDataOrEmployees, sortDirectionOfEmployees));   
-                csvDataParsed = csvData;
+                if (CSVParser.Ingestion.MAPPED == ingestion)
+                    return Optional.of(parseMappedFile(namePool));
+
+                long sizeOfFile, startOfLines, endOfLines;                  // NOTE - Rows appended while streaming are applied again by parseAppended, duplicates are ignored
+                try (FileChannel channel = openFileChannel()) {
+                    sizeOfFile = channel.size();
+                    startOfLines = endOfHeader(channel);
+                    endOfLines = endOfConsumedLines(channel, startOfLines, sizeOfFile);
+                }
+                catch (IOException e) {
+                    throw new MalformedCSVException("FAILED to parse CSV file");
+                }
+                try (Stream<String> linesOfCSV = fileLines()) {           // NOTE - Lines are fed to the hierarchy as they are read, the raw text is never held in full
+                    // Each stream worker tallies its own lines, sequential streams collect in file order as ORIGINAL trees require
+                    RowTally tally = (SurveyCSVData.Employee.SortOrder.ORIGINAL != sortOrderOfDataOrEmployees ? linesOfCSV.parallel() : linesOfCSV)
+                            .collect(RowTally::new, (t, l) -> processLineOfCSV(l, csvData, namePool, firstNames, lastNames, sortOrderOfDataOrEmployees, sortDirectionOfEmployees, t), RowTally::merge);
+                    tally.report(metrics, false);
+                    csvData.parseStatistics = new SurveyCSVData.ParseStatistics(namePool);
+                    csvData.consumedBytes = endOfLines;
+                    metrics.add(SurveyMetrics.Counter.BYTES_PARSED, sizeOfFile - startOfLines);
+                    csvDataParsed = csvData;
+                }
+                catch (Exception e) {                       
+                    throw new MalformedCSVException("FAILED to parse CSV file");     // NOTE - Should a "bad" line prevent the remainder of the parse?
+                }
             }
-            catch (Exception e) {                       
-                throw new MalformedCSVException("FAILED to parse CSV file");     // NOTE - Should a "bad" line prevent the remainder of the parse?
+            finally {
+                parseTimer.close();
             }
         }
 
         return Optional.ofNullable(csvDataParsed);
     }
 
-    private static void processLineOfCSV(String line, SurveyCSVData data, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees)
+    /**
+     * Parse line-aligned mapped chunks of the file on all cores, sorted trees are built directly in their concurrent maps,
+     * ORIGINAL trees are built per chunk and merged in chunk order so first-seen order and duplicate handling match a sequential parse
+     */
+    private SurveyCSVData parseMappedFile(CSVStringPool namePool) throws MalformedCSVException {
+        try (FileChannel channel = openFileChannel()) {
+            long[] chunkOffsets = parallelChunkOffsets(channel);
+
+            SurveyCSVData csvData;
+            if (SurveyCSVData.Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
+                csvData = ForkJoinPool.commonPool().invoke(new OrderedChunksTask(channel, chunkOffsets, 0, chunkOffsets.length - 1, namePool));
+            else {
+                SurveyCSVData sortedData = new SurveyCSVData(sortOrderOfDataOrEmployees, columns);
+                IntStream.range(0, chunkOffsets.length - 1).parallel().forEach(chunk -> parseMappedChunk(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1], sortedData, namePool));
+                csvData = sortedData;
+            }
+            csvData.parseStatistics = new SurveyCSVData.ParseStatistics(namePool);
+            csvData.consumedBytes = endOfConsumedLines(channel, chunkOffsets[0], chunkOffsets[chunkOffsets.length - 1]);
+            return csvData;
+        }
+        catch (IOException | RuntimeException e) {
+            throw new MalformedCSVException("FAILED to parse CSV file");
+        }
+    }
+
+    /**
+     * Apply the rows appended to the file since the data was parsed, only the new bytes are read.
+     * Rollups, id indexes and sorted views of the data follow as for any other added employee, analyzers over it see the new rows straight away.
+     * A trailing line still being written is left for the next call. Not safe to call while the data is read from other threads, frozen data is refused.
+     * @param data parsed from this parser's file with the same sort order
+     * @return number of bytes applied, 0 if nothing complete was appended
+     * @exception MalformedCSVException if the file can not be read, has shrunk since the data was parsed, or has a bad new row
+     */
+    public long parseAppended(SurveyCSVData data) throws MalformedCSVException {
+        Objects.requireNonNull(data);
+        if (true == data.isFrozen())
+            throw new IllegalStateException("Survey data is frozen, parse a new version instead");
+        if (data.sortOrderOfDataOrEmployees != sortOrderOfDataOrEmployees)
+            throw new IllegalArgumentException("Data sorted by " + data.sortOrderOfDataOrEmployees + " can not be extended by a parser sorting by " + sortOrderOfDataOrEmployees);
+        if (false == data.columns.equals(columns))
+            throw new IllegalArgumentException("Data with columns " + data.columns + " can not be extended by a parser of columns " + columns);
+
+        SurveyMetrics.Timer parseTimer = SurveyMetrics.global().start(SurveyMetrics.Stage.PARSE);
+        try (FileChannel channel = openFileChannel()) {
+            long sizeOfFile = channel.size();
+            if (sizeOfFile < data.consumedBytes)
+                throw new MalformedCSVException("CSV file has shrunk, a full parse is required");
+
+            long from = startOfLineAtOrAfter(channel, data.consumedBytes);       // NOTE - A last line parsed while unterminated is read again, its employee is a duplicate
+            long to = endOfLastCompleteLine(channel, from, sizeOfFile);
+            if (to == from)
+                return 0;
+
+            long[] chunkOffsets = lineAlignedChunkOffsets(channel, from, to, parallelChunkBytes(to - from));
+            CSVStringPool namePool = new CSVStringPool(NAME_POOL_SIZE);
+            if (SurveyCSVData.Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees) {
+                for (int chunk = 0; chunk < chunkOffsets.length - 1; chunk++)
+                    parseMappedChunk(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1], data, namePool);
+            }
+            else
+                IntStream.range(0, chunkOffsets.length - 1).parallel().forEach(chunk -> parseMappedChunk(channel, chunkOffsets[chunk], chunkOffsets[chunk + 1], data, namePool));
+            data.consumedBytes = to;
+            return to - from;
+        }
+        catch (IOException | RuntimeException e) {
+            throw new MalformedCSVException("FAILED to parse appended CSV rows");
+        }
+        finally {
+            parseTimer.close();
+        }
+    }
+
+    /**
+     * Parse the lines of a region, stage times and counts are gathered locally and reported once for the region
+     */
+    private void parseMappedChunk(FileChannel channel, long from, long to, SurveyCSVData data, CSVStringPool namePool) {
+        SurveyMetrics metrics = SurveyMetrics.global();
+        long allocationMark = metrics.allocationMark();
+        RowTally tally = new RowTally();
+        try {
+            long readStartNanos = System.nanoTime();
+            CSVByteTokenizer tokenizer = new CSVByteTokenizer(mapFileRegion(channel, from, to), SEPERATOR_OF_TOKENS.charAt(0), MIN_TOKENS_PER_LINE);
+            while (tokenizer.nextLine()) {
+                boolean sampled = tally.isSampling();
+                long lineFoundNanos = sampled ? System.nanoTime() : 0;
+                if (tokenizer.fieldCount() >= MIN_TOKENS_PER_LINE) {
+                    int divisionId = tokenizer.intField(0), teamId = tokenizer.intField(1), managerId = tokenizer.intField(2), employeeId = tokenizer.intField(3);
+                    String firstName = firstNames ? tokenizer.stringField(4, namePool) : null, lastName = lastNames ? tokenizer.stringField(5, namePool) : null;     // NOTE - Skipped fields are never decoded
+                    int birthdateEpochDay = tokenizer.epochDayField(6);
+                    String paddedBirthdate = tokenizer.paddedDateField(6);
+                    long tokenizedNanos = sampled ? System.nanoTime() : 0;
+                    boolean added = buildSurveyData(divisionId, teamId, managerId, employeeId, firstName, lastName, birthdateEpochDay, paddedBirthdate, data, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+                    if (true == sampled)
+                        tally.sample(lineFoundNanos - readStartNanos, tokenizedNanos - lineFoundNanos, System.nanoTime() - tokenizedNanos);
+                    tally.row(added);
+                }
+                else {
+                    if (true == sampled)
+                        tally.sample(lineFoundNanos - readStartNanos, 0, 0);
+                    tally.skipped();
+                }
+                if (true == tally.isSampling())
+                    readStartNanos = System.nanoTime();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            tally.report(metrics, true);
+            metrics.add(SurveyMetrics.Counter.BYTES_PARSED, to - from);
+            metrics.addAllocation(SurveyMetrics.Stage.PARSE, allocationMark);
+        }
+    }
+
+    /**
+     * Class tallying the lines of one chunk or stream worker without clocks or shared counters in the loop, one line in SAMPLE_INTERVAL is timed
+     * and the sampled stage times are scaled up to every line when the tally is reported, once
+     */
+    private static final class RowTally {
+
+        private static final int SAMPLE_INTERVAL = 64;
+
+        private long lines, rows, duplicateRows, skippedRows;
+        private long sampledLines, sampledReadNanos, sampledTokenizeNanos, sampledBuildNanos;
+
+        /**
+         * @return true if the next line is to be timed
+         */
+        boolean isSampling() {
+            return 0 == lines % SAMPLE_INTERVAL;
+        }
+
+        void sample(long readNanos, long tokenizeNanos, long buildNanos) {
+            sampledLines++;
+            sampledReadNanos += readNanos;
+            sampledTokenizeNanos += tokenizeNanos;
+            sampledBuildNanos += buildNanos;
+        }
+
+        void row(boolean added) {
+            lines++;
+            rows++;
+            if (false == added)
+                duplicateRows++;
+        }
+
+        void skipped() {
+            lines++;
+            skippedRows++;
+        }
+
+        void merge(RowTally other) {
+            lines += other.lines;
+            rows += other.rows;
+            duplicateRows += other.duplicateRows;
+            skippedRows += other.skippedRows;
+            sampledLines += other.sampledLines;
+            sampledReadNanos += other.sampledReadNanos;
+            sampledTokenizeNanos += other.sampledTokenizeNanos;
+            sampledBuildNanos += other.sampledBuildNanos;
+        }
+
+        /**
+         * @param fileRead true if reading lines was timed apart from tokenizing them
+         */
+        void report(SurveyMetrics metrics, boolean fileRead) {
+            if (true == fileRead)
+                metrics.addNanos(SurveyMetrics.Stage.FILE_READ, lines, scaled(sampledReadNanos));
+            metrics.addNanos(SurveyMetrics.Stage.TOKENIZE, rows, scaled(sampledTokenizeNanos));
+            metrics.addNanos(SurveyMetrics.Stage.HIERARCHY_BUILD, rows, scaled(sampledBuildNanos));
+            metrics.add(SurveyMetrics.Counter.ROWS_PARSED, rows);
+            metrics.add(SurveyMetrics.Counter.DUPLICATE_ROWS, duplicateRows);
+            metrics.add(SurveyMetrics.Counter.SKIPPED_ROWS, skippedRows);
+        }
+
+        private long scaled(long sampledNanos) {
+            return 0 == sampledLines ? 0 : (long)((double)sampledNanos * lines / sampledLines);
+        }
+    }
+
+    /**
+     * Fork-join task building the tree of a range of chunks, the earlier half absorbs the later half so the merge keeps chunk order
+     */
+    private final class OrderedChunksTask extends RecursiveTask<SurveyCSVData> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] chunkOffsets;
+        private final int firstChunk, endChunk;
+        private final CSVStringPool namePool;
+
+        OrderedChunksTask(FileChannel channel, long[] chunkOffsets, int firstChunk, int endChunk, CSVStringPool namePool) {
+            this.channel = channel;
+            this.chunkOffsets = chunkOffsets;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.namePool = namePool;
+        }
+
+        @Override
+        protected SurveyCSVData compute() {
+            if (endChunk - firstChunk <= 1) {
+                SurveyCSVData partialData = new SurveyCSVData(sortOrderOfDataOrEmployees, columns);
+                if (endChunk > firstChunk)
+                    parseMappedChunk(channel, chunkOffsets[firstChunk], chunkOffsets[endChunk], partialData, namePool);
+                return partialData;
+            }
+            int middleChunk = (firstChunk + endChunk) >>> 1;
+            OrderedChunksTask earlier = new OrderedChunksTask(channel, chunkOffsets, firstChunk, middleChunk, namePool);
+            earlier.fork();
+            SurveyCSVData laterData = new OrderedChunksTask(channel, chunkOffsets, middleChunk, endChunk, namePool).compute();
+            SurveyCSVData earlierData = earlier.join();
+            earlierData.absorb(laterData);
+            return earlierData;
+        }
+    }
+
+    private static void processLineOfCSV(String line, SurveyCSVData data, CSVStringPool namePool, boolean firstNames, boolean lastNames, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees, RowTally tally)
     {
+        boolean sampled = tally.isSampling();
+        long lineStartNanos = sampled ? System.nanoTime() : 0;
         StringTokenizer tokenizer = new StringTokenizer(line, SEPERATOR_OF_TOKENS);
         short indexOfTokenFound = 0;
         String divisionId = null, teamId = null, managerId = null, employeeId = null, lastName = null, firstName = null, birthdate = null;      
@@ -85,10 +365,12 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
                     employeeId = token;
                     break;
                 case 4:
-                    firstName = token;
+                    if (true == firstNames)
+                        firstName = namePool.intern(token);
                     break;
                 case 5:
-                    lastName = token;
+                    if (true == lastNames)
+                        lastName = namePool.intern(token);
                     break;
                 case MIN_TOKENS_PER_LINE-1:
                     birthdate = token;
@@ -99,39 +381,61 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             indexOfTokenFound++;
         }
 
-        if (indexOfTokenFound >= MIN_TOKENS_PER_LINE)
-            buildSurveyData(divisionId, teamId, managerId, employeeId, firstName, lastName, birthdate, data, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+        if (indexOfTokenFound >= MIN_TOKENS_PER_LINE) {
+            Objects.requireNonNull(divisionId);
+            Objects.requireNonNull(teamId);
+            Objects.requireNonNull(managerId);
+            Objects.requireNonNull(employeeId);
+            Objects.requireNonNull(birthdate);
+
+            int divisionIdValue = Integer.parseInt(divisionId), teamIdValue = Integer.parseInt(teamId), managerIdValue = Integer.parseInt(managerId), employeeIdValue = Integer.parseInt(employeeId);
+            int birthdateEpochDay = CSVDates.decodeEpochDay(birthdate);
+            long tokenizedNanos = sampled ? System.nanoTime() : 0;
+            boolean added = buildSurveyData(divisionIdValue, teamIdValue, managerIdValue, employeeIdValue, firstName, lastName, birthdateEpochDay, CSVDates.isPadded(birthdate) ? birthdate : null,
+                    data, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
+            if (true == sampled)
+                tally.sample(0, tokenizedNanos - lineStartNanos, System.nanoTime() - tokenizedNanos);
+            tally.row(added);
+        }
+        else {
+            if (true == sampled)
+                tally.sample(0, 0, 0);
+            tally.skipped();
+        }
     }
 
-    private static synchronized void buildSurveyData(String divisionId, String teamId, String managerId, String employeeId, String firstName, String lastName, String birthdate, SurveyCSVData data, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection direction) 
+    /**
+     * Add a row to the hierarchy without any global lock, sorted trees use concurrent maps so rows may be added from several threads,
+     * ORIGINAL trees keep CSV insertion order in linked maps and must only be built from one thread at a time.
+     * A node only becomes part of the rollups and indexes once it has won the race to be put in its parent's map.
+     * Names are null when their column is not parsed, the padded birthdate is null unless the CSV text has leading zeros.
+     * @return false if the employee was already present under the manager, the row is then ignored
+     */
+    static boolean buildSurveyData(int divisionId, int teamId, int managerId, int employeeId, String firstName, String lastName, int birthdateEpochDay, String paddedBirthdate, SurveyCSVData data, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection direction) 
     {
-        Objects.requireNonNull(divisionId);
-        Objects.requireNonNull(teamId);
-        Objects.requireNonNull(managerId);
-        Objects.requireNonNull(employeeId);
-        Objects.requireNonNull(firstName);
-        Objects.requireNonNull(lastName);
-        Objects.requireNonNull(birthdate);
-
-        Integer divisionIdBox = Integer.parseInt(divisionId);
-        Integer teamIdBox = Integer.parseInt(teamId);
-        Integer managerIdBox = Integer.parseInt(managerId);
-        Integer employeeIdBox = Integer.parseInt(employeeId);
-
-        if (false == data.divisions.containsKey(divisionIdBox))
-             data.divisions.put(divisionIdBox, new SurveyCSVData.Division(divisionIdBox, sortOrderOfDataOrEmployees));
-        SurveyCSVData.Division division = data.divisions.get(divisionIdBox);
+        Integer employeeIdBox = employeeId;
 
-        if (false == division.teams.containsKey(teamIdBox))
-            division.teams.put(teamIdBox, division.createTeam(teamIdBox));
-        SurveyCSVData.Team team = division.teams.get(teamIdBox);
+        SurveyCSVData.Manager manager = managerOf(divisionId, teamId, managerId, data, sortOrderOfDataOrEmployees, direction);
+        if (true == manager.employees.containsKey(employeeIdBox))
+            return false;
+        SurveyCSVData.Employee employee = null == paddedBirthdate ? manager.createEmployee(employeeIdBox, firstName, lastName, birthdateEpochDay) : manager.createEmployee(employeeIdBox, firstName, lastName, paddedBirthdate);
+        return manager.addEmployeeIfAbsent(employeeIdBox, employee);       // NOTE - Duplicates will not be added more than once
+    }
 
-        if (false == team.managers.containsKey(managerIdBox))
-            team.managers.put(managerIdBox, team.createManager(managerIdBox, direction));
+    /**
+     * @return the manager under the division and team, each created and attached if absent
+     */
+    private static SurveyCSVData.Manager managerOf(Integer divisionIdBox, Integer teamIdBox, Integer managerIdBox, SurveyCSVData data, SurveyCSVData.Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection direction) {
+        SurveyCSVData.Division division = data.divisions.get(divisionIdBox);
+        if (null == division)
+            division = data.attachIfAbsent(divisionIdBox, new SurveyCSVData.Division(divisionIdBox, sortOrderOfDataOrEmployees));
+        SurveyCSVData.Team team = division.teams.get(teamIdBox);
+        if (null == team)
+            team = division.attachIfAbsent(teamIdBox, division.createTeam(teamIdBox));
         SurveyCSVData.Manager manager = team.managers.get(managerIdBox);
-
-        if (false == manager.employees.containsKey(employeeIdBox)) 
-            manager.employees.put(employeeIdBox, manager.createEmployee(employeeIdBox, firstName, lastName, birthdate));        // NOTE - Duplicates will not be added more than once
+        if (null == manager)
+            manager = team.attachIfAbsent(managerIdBox, team.createManager(managerIdBox, direction));
+        return manager;
     }
 
     /**
@@ -141,27 +445,325 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
      */
     public final static class SurveyCSVData extends CSVData {
 
-        private static final short VERSION = 1;                 // NOTE - Good idea to apply version to data structures
+        static final short VERSION = 2;                         // NOTE - Good idea to apply version to data structures
 
         private Map<Integer, Division> divisions;
 
+        private transient final AgeRollup ageRollup = new AgeRollup();
+        private transient final EmployeeScope scope = new EmployeeScope(ageRollup, () -> divisions.values().stream().flatMap(division -> division.scope.employees()), () -> mergedSketch(divisions.values(), Division::getBirthdateSketch));
+
+        private transient boolean frozen;                           // NOTE - Set before the data is published to other threads, never cleared
+        private transient volatile ParseStatistics parseStatistics = ParseStatistics.NONE;
+        private transient volatile long consumedBytes;              // NOTE - Offset in the file up to which rows have been applied
+
+        private transient final Employee.SortOrder sortOrderOfDataOrEmployees;
+        private transient final Set<Column> columns;
+        private transient final LongAdder revision = new LongAdder();
+
+        private transient final Map<Integer, List<Team>> teamsById = new ConcurrentHashMap<>();             // NOTE - The same team or manager id can appear under several parents
+        private transient final Map<Integer, List<Manager>> managersById = new ConcurrentHashMap<>();
+
         public SurveyCSVData(Employee.SortOrder sortOrderOfDataOrEmployees) {
+            this(sortOrderOfDataOrEmployees, EnumSet.allOf(Column.class));
+        }
+        /**
+         * @param columns present in the data, employees hold null for names that are not
+         */
+        public SurveyCSVData(Employee.SortOrder sortOrderOfDataOrEmployees, Set<Column> columns) {
             super(new String[] {"divisionId", "teamId", "managerId", "employeeId", "lastName", "firstName", "birthdate"});
+            this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
+            this.columns = Collections.unmodifiableSet(Column.projection(columns, sortOrderOfDataOrEmployees));
             if (Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
                 divisions = new LinkedHashMap <>();
             else
-                divisions = new TreeMap<>();
+                divisions = new ConcurrentSkipListMap<>();
         }
 
         public void addDivision(Integer id, Division division) {
             Objects.requireNonNull(id); Objects.requireNonNull(division);
-            divisions.put(id, division);
+            checkNotFrozen(frozen || division.frozen);
+            Division previous = divisions.put(id, division);
+            if (previous != division) {
+                if (null != previous)
+                    detach(previous);
+                attach(division);
+            }
         }
 
         public Map<Integer, Division>  getDivisions() {
             return Collections.unmodifiableMap(divisions);  
         }
 
+        /**
+         * Make this data and every node below it unchangeable, so one version can be shared with readers on any thread without locks.
+         * Later adds to it, adds of its nodes elsewhere and appended rows throw IllegalStateException, a new version is parsed instead.
+         * The birthdate sketches of every node are built here, as they can no longer change, so no query pays for them.
+         * @return this data
+         */
+        public SurveyCSVData freeze() {
+            for (Division division : divisions.values()) {
+                for (Team team : division.teams.values()) {
+                    for (Manager manager : team.managers.values())
+                        manager.frozen = true;
+                    team.frozen = true;
+                }
+                division.frozen = true;
+            }
+            frozen = true;
+            scope.getBirthdateSketch();                 // NOTE - Merged from the divisions down, building and caching the sketch of every node
+            return this;
+        }
+
+        /**
+         * Build this data sorted another way from the employees already parsed, which are shared rather than copied.
+         * Ties and duplicates resolve as in a parse sorted that way, so the result matches one without reading the file again.
+         * @return new data, not frozen, holding the same rows as this data
+         * @exception IllegalArgumentException if sorted ORIGINAL while this data is not, file order is lost once sorted, or sorted by a name not parsed
+         */
+        public SurveyCSVData sortedBy(Employee.SortOrder sortOrder, CSVData.SortDirection sortDirection) {
+            if (Employee.SortOrder.ORIGINAL == sortOrder && Employee.SortOrder.ORIGINAL != sortOrderOfDataOrEmployees)
+                throw new IllegalArgumentException("Data sorted by " + sortOrderOfDataOrEmployees + " can not be put back in file order");
+            if (false == columns.containsAll(Column.projection(EnumSet.noneOf(Column.class), sortOrder)))
+                throw new IllegalArgumentException("Data without the column sorted by " + sortOrder);
+
+            SurveyCSVData sortedData = new SurveyCSVData(sortOrder, columns);
+            for (Division division : divisions.values())
+                for (Team team : division.teams.values())
+                    for (Manager manager : team.managers.values()) {
+                        Manager sortedManager = managerOf(division.getId(), team.getId(), manager.getId(), sortedData, sortOrder, sortDirection);
+                        manager.employees.forEach(sortedManager::addEmployeeIfAbsent);
+                    }
+            sortedData.parseStatistics = parseStatistics;
+            sortedData.consumedBytes = consumedBytes;
+            return sortedData;
+        }
+
+        @JsonIgnore
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        @JsonIgnore
+        public AgeRollup getAgeRollup() {
+            return ageRollup;
+        }
+
+        /**
+         * @return birthdates of all employees, merged from the divisions and kept until the company rollup changes
+         */
+        @JsonIgnore
+        public BirthdateSketch getBirthdateSketch() {
+            return scope.getBirthdateSketch();
+        }
+
+        /**
+         * @return all employees born from the first to the last date inclusive, lazily in birthdate order, the index is sorted once and kept until the rollup changes
+         */
+        public Iterator<Employee> findEmployeesBornBetween(LocalDate firstBirthdate, LocalDate lastBirthdate) {
+            return scope.findEmployeesBornBetween(firstBirthdate, lastBirthdate);
+        }
+        /**
+         * @return all employees whose last name starts with the prefix, case-sensitive, lazily in last name order, the index is kept until the rollup changes
+         */
+        public Iterator<Employee> findEmployeesWithLastNamePrefix(String prefix) {
+            return scope.findEmployeesWithLastNamePrefix(prefix);
+        }
+
+        /**
+         * @return figures gathered while parsing, empty for data built by hand
+         */
+        @JsonIgnore
+        public ParseStatistics getParseStatistics() {
+            return parseStatistics;
+        }
+
+        @JsonIgnore
+        public Employee.SortOrder getSortOrder() {
+            return sortOrderOfDataOrEmployees;
+        }
+
+        /**
+         * @return columns parsed into the data, the names of the others are absent from every employee
+         */
+        @JsonIgnore
+        public Set<Column> getColumns() {
+            return columns;
+        }
+        public boolean hasColumn(Column column) {
+            return columns.contains(column);
+        }
+
+        /**
+         * @return offset in the CSV file up to which rows have been applied, 0 for data built by hand
+         */
+        @JsonIgnore
+        public long getConsumedBytes() {
+            return consumedBytes;
+        }
+        void restoreConsumedBytes(long consumedBytes) {
+            this.consumedBytes = consumedBytes;
+        }
+
+        /**
+         * @return count of changes to employees anywhere in the tree, differs whenever derived results may be stale
+         */
+        @JsonIgnore
+        public long getRevision() {
+            return revision.sum();
+        }
+
+        /**
+         * @return every team with the id, across all divisions, in the order they were added
+         */
+        public List<Team> getTeamsWithId(Integer id) {
+            return Collections.unmodifiableList(teamsById.getOrDefault(id, Collections.emptyList()));
+        }
+        /**
+         * @return every manager with the id, across all teams and divisions, in the order they were added
+         */
+        public List<Manager> getManagersWithId(Integer id) {
+            return Collections.unmodifiableList(managersById.getOrDefault(id, Collections.emptyList()));
+        }
+
+        /**
+         * Attach a new, empty division unless one with the id won the race, its parent is set before it is visible so later additions below it propagate
+         */
+        private Division attachIfAbsent(Integer id, Division division) {
+            division.parent = this;
+            Division existing = divisions.putIfAbsent(id, division);
+            return null != existing ? existing : division;
+        }
+        private Division attach(Division division) {
+            division.parent = this;
+            rollupChanged(division.ageRollup.getSumOfBirthdateEpochDays(), division.ageRollup.getNumberOfEmployees());
+            division.teams.values().forEach(this::index);
+            return division;
+        }
+        private void detach(Division division) {
+            division.parent = null;
+            rollupChanged(-division.ageRollup.getSumOfBirthdateEpochDays(), -division.ageRollup.getNumberOfEmployees());
+            division.teams.values().forEach(this::unindex);
+        }
+        private void rollupChanged(long birthdateEpochDays, long employees) {
+            ageRollup.add(birthdateEpochDays, employees);
+            revision.increment();
+        }
+
+        private void index(Team team) {
+            ((CopyOnWriteArrayList<Team>)teamsById.computeIfAbsent(team.getId(), id -> new CopyOnWriteArrayList<>())).addIfAbsent(team);
+            team.managers.values().forEach(this::index);
+        }
+        private void index(Manager manager) {
+            ((CopyOnWriteArrayList<Manager>)managersById.computeIfAbsent(manager.getId(), id -> new CopyOnWriteArrayList<>())).addIfAbsent(manager);
+        }
+        private void unindex(Team team) {
+            teamsById.getOrDefault(team.getId(), Collections.emptyList()).remove(team);
+            team.managers.values().forEach(this::unindex);
+        }
+        private void unindex(Manager manager) {
+            managersById.getOrDefault(manager.getId(), Collections.emptyList()).remove(manager);
+        }
+        private static void checkNotFrozen(boolean frozen) {
+            if (true == frozen)
+                throw new IllegalStateException("Survey data is frozen, changes go into a new version");
+        }
+        private static BirthdateSketch sketchOf(Collection<Employee> employees) {
+            int[] birthdateEpochDays = employees.stream().mapToInt(employee -> employee.birthdateEpochDay).toArray();
+            return BirthdateSketch.of(birthdateEpochDays, 0, birthdateEpochDays.length);
+        }
+        /**
+         * Sketch of several children together, each child's own sketch is reused while it is current
+         */
+        private static <T> BirthdateSketch mergedSketch(Collection<T> children, Function<T, BirthdateSketch> sketchOf) {
+            List<BirthdateSketch> sketches = new ArrayList<>(children.size());
+            for (T child : children)
+                sketches.add(sketchOf.apply(child));
+            return BirthdateSketch.merge(sketches);
+        }
+
+        /**
+         * Merge a tree parsed from later lines into this one, new entries are appended in their order and existing employees are kept
+         */
+        private void absorb(SurveyCSVData later) {
+            later.divisions.forEach((id, division) -> {
+                Division existing = divisions.putIfAbsent(id, division);
+                if (null != existing)
+                    existing.absorb(division);
+                else
+                    attach(division);
+            });
+        }
+
+        /**
+         * Figures gathered while parsing, currently the effect of sharing repeated first and last names
+         */
+        public final static class ParseStatistics {
+
+            private static final ParseStatistics NONE = new ParseStatistics(0, 0, 0, 0);
+
+            private final long namesLookedUp;
+            private final long namesShared;
+            private final int distinctNamesPooled;
+            private final long estimatedBytesSaved;
+
+            private ParseStatistics(CSVStringPool namePool) {
+                this(namePool.getLookups(), namePool.getHits(), namePool.getPooledStrings(), namePool.getEstimatedBytesSaved());
+            }
+            private ParseStatistics(long namesLookedUp, long namesShared, int distinctNamesPooled, long estimatedBytesSaved) {
+                this.namesLookedUp = namesLookedUp;
+                this.namesShared = namesShared;
+                this.distinctNamesPooled = distinctNamesPooled;
+                this.estimatedBytesSaved = estimatedBytesSaved;
+            }
+
+            public long getNamesLookedUp() {
+                return namesLookedUp;
+            }
+            public long getNamesShared() {
+                return namesShared;
+            }
+            public int getDistinctNamesPooled() {
+                return distinctNamesPooled;
+            }
+            public long getEstimatedBytesSaved() {
+                return estimatedBytesSaved;
+            }
+
+            @Override
+            public String toString() {
+                return "(namesLookedUp='" + namesLookedUp + "', namesShared='" + namesShared + "', distinctNamesPooled='" + distinctNamesPooled + "', estimatedBytesSaved='" + estimatedBytesSaved + "')";
+            }
+        }
+
+        /**
+         * Running totals of the employees below a node, maintained as employees are added so averages need no traversal
+         */
+        public final static class AgeRollup {
+
+            private final LongAdder sumOfBirthdateEpochDays = new LongAdder();
+            private final LongAdder numberOfEmployees = new LongAdder();
+            private final LongAdder changes = new LongAdder();
+
+            private void add(long birthdateEpochDays, long employees) {
+                sumOfBirthdateEpochDays.add(birthdateEpochDays);
+                numberOfEmployees.add(employees);
+                changes.increment();
+            }
+
+            public long getSumOfBirthdateEpochDays() {
+                return sumOfBirthdateEpochDays.sum();
+            }
+            public long getNumberOfEmployees() {
+                return numberOfEmployees.sum();
+            }
+            /**
+             * @return count of changes below the node, differs whenever results derived from the node may be stale
+             */
+            public long getChanges() {
+                return changes.sum();
+            }
+        }
+
         /**
          * Class representing division in survey data
          */
@@ -172,13 +774,18 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             private transient final Integer id;
             private final Employee.SortOrder sortOrderOfDataOrEmployees;
 
+            private transient final AgeRollup ageRollup = new AgeRollup();
+            private transient final EmployeeScope scope = new EmployeeScope(ageRollup, () -> teams.values().stream().flatMap(team -> team.scope.employees()), () -> mergedSketch(teams.values(), Team::getBirthdateSketch));
+            private transient boolean frozen;
+            private transient SurveyCSVData parent;
+
             public Division(Integer id, Employee.SortOrder sortOrderOfDataOrEmployees) {
                 this.id = id;
                 this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
                 if (Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
                     teams = new LinkedHashMap <>();
                 else
-                    teams = new TreeMap<>();
+                    teams = new ConcurrentSkipListMap<>();
             }
 
             @JsonIgnore
@@ -188,7 +795,13 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
 
             public void addTeam(Integer id, Team team) {
                 Objects.requireNonNull(id); Objects.requireNonNull(team);
-                teams.put(id, team);
+                checkNotFrozen(frozen || team.frozen);
+                Team previous = teams.put(id, team);
+                if (previous != team) {
+                    if (null != previous)
+                        detach(previous);
+                    attach(team);
+                }
             }
             public Team createTeam(Integer id) {
                 return new Team(id, sortOrderOfDataOrEmployees);
@@ -197,6 +810,70 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             public Map<Integer, Team> getTeams() {
                 return Collections.unmodifiableMap(teams);  
             }       
+
+            @JsonIgnore
+            public AgeRollup getAgeRollup() {
+                return ageRollup;
+            }
+
+            /**
+             * @return birthdates of the employees below, merged from the teams and kept until the rollup changes
+             */
+            @JsonIgnore
+            public BirthdateSketch getBirthdateSketch() {
+                return scope.getBirthdateSketch();
+            }
+
+            /**
+             * @return the employees below born from the first to the last date inclusive, lazily in birthdate order, the index is sorted once and kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesBornBetween(LocalDate firstBirthdate, LocalDate lastBirthdate) {
+                return scope.findEmployeesBornBetween(firstBirthdate, lastBirthdate);
+            }
+            /**
+             * @return the employees below whose last name starts with the prefix, case-sensitive, lazily in last name order, the index is kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesWithLastNamePrefix(String prefix) {
+                return scope.findEmployeesWithLastNamePrefix(prefix);
+            }
+
+            private Team attachIfAbsent(Integer id, Team team) {
+                team.parent = this;
+                Team existing = teams.putIfAbsent(id, team);
+                if (null != existing)
+                    return existing;
+                if (null != parent)
+                    parent.index(team);
+                return team;
+            }
+            private Team attach(Team team) {
+                team.parent = this;
+                rollupChanged(team.ageRollup.getSumOfBirthdateEpochDays(), team.ageRollup.getNumberOfEmployees());
+                if (null != parent)
+                    parent.index(team);
+                return team;
+            }
+            private void detach(Team team) {
+                team.parent = null;
+                rollupChanged(-team.ageRollup.getSumOfBirthdateEpochDays(), -team.ageRollup.getNumberOfEmployees());
+                if (null != parent)
+                    parent.unindex(team);
+            }
+            private void rollupChanged(long birthdateEpochDays, long employees) {
+                ageRollup.add(birthdateEpochDays, employees);
+                if (null != parent)
+                    parent.rollupChanged(birthdateEpochDays, employees);
+            }
+
+            private void absorb(Division later) {
+                later.teams.forEach((id, team) -> {
+                    Team existing = teams.putIfAbsent(id, team);
+                    if (null != existing)
+                        existing.absorb(team);
+                    else
+                        attach(team);
+                });
+            }
         }
 
         /**
@@ -209,13 +886,18 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             private transient final Integer id;
             private final Employee.SortOrder sortOrderOfDataOrEmployees;
 
+            private transient final AgeRollup ageRollup = new AgeRollup();
+            private transient final EmployeeScope scope = new EmployeeScope(ageRollup, () -> managers.values().stream().flatMap(manager -> manager.scope.employees()), () -> mergedSketch(managers.values(), Manager::getBirthdateSketch));
+            private transient boolean frozen;
+            private transient Division parent;
+
             public Team(Integer id, Employee.SortOrder sortOrderOfDataOrEmployees) {
                 this.id = id;
                 this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
                 if (Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
                     managers = new LinkedHashMap <>();
                 else
-                    managers = new TreeMap<>();
+                    managers = new ConcurrentSkipListMap<>();
             }
 
             @JsonIgnore
@@ -225,7 +907,13 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
 
             public void addManager(Integer id, Manager manager) {
                 Objects.requireNonNull(id); Objects.requireNonNull(manager);
-                managers.put(id, manager);
+                checkNotFrozen(frozen || manager.frozen);
+                Manager previous = managers.put(id, manager);
+                if (previous != manager) {
+                    if (null != previous)
+                        detach(previous);
+                    attach(manager);
+                }
             }           
             public Manager createManager(Integer id, CSVData.SortDirection sortDirectionOfEmployees) {
                 return new Manager(id, sortOrderOfDataOrEmployees, sortDirectionOfEmployees);
@@ -234,6 +922,70 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             public Map<Integer, Manager> getManagers() {
                 return Collections.unmodifiableMap(managers);   
             }           
+
+            @JsonIgnore
+            public AgeRollup getAgeRollup() {
+                return ageRollup;
+            }
+
+            /**
+             * @return birthdates of the employees below, merged from the managers and kept until the rollup changes
+             */
+            @JsonIgnore
+            public BirthdateSketch getBirthdateSketch() {
+                return scope.getBirthdateSketch();
+            }
+
+            /**
+             * @return the employees below born from the first to the last date inclusive, lazily in birthdate order, the index is sorted once and kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesBornBetween(LocalDate firstBirthdate, LocalDate lastBirthdate) {
+                return scope.findEmployeesBornBetween(firstBirthdate, lastBirthdate);
+            }
+            /**
+             * @return the employees below whose last name starts with the prefix, case-sensitive, lazily in last name order, the index is kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesWithLastNamePrefix(String prefix) {
+                return scope.findEmployeesWithLastNamePrefix(prefix);
+            }
+
+            private Manager attachIfAbsent(Integer id, Manager manager) {
+                manager.parent = this;
+                Manager existing = managers.putIfAbsent(id, manager);
+                if (null != existing)
+                    return existing;
+                if (null != parent && null != parent.parent)
+                    parent.parent.index(manager);
+                return manager;
+            }
+            private Manager attach(Manager manager) {
+                manager.parent = this;
+                rollupChanged(manager.ageRollup.getSumOfBirthdateEpochDays(), manager.ageRollup.getNumberOfEmployees());
+                if (null != parent && null != parent.parent)
+                    parent.parent.index(manager);
+                return manager;
+            }
+            private void detach(Manager manager) {
+                manager.parent = null;
+                rollupChanged(-manager.ageRollup.getSumOfBirthdateEpochDays(), -manager.ageRollup.getNumberOfEmployees());
+                if (null != parent && null != parent.parent)
+                    parent.parent.unindex(manager);
+            }
+            private void rollupChanged(long birthdateEpochDays, long employees) {
+                ageRollup.add(birthdateEpochDays, employees);
+                if (null != parent)
+                    parent.rollupChanged(birthdateEpochDays, employees);
+            }
+
+            private void absorb(Team later) {
+                later.managers.forEach((id, manager) -> {
+                    Manager existing = managers.putIfAbsent(id, manager);
+                    if (null != existing)
+                        existing.absorb(manager);
+                    else
+                        attach(manager);
+                });
+            }
         }
 
         /**
@@ -248,6 +1000,14 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
 
             private transient final Integer id;
 
+            private transient final AgeRollup ageRollup = new AgeRollup();
+            private transient final EmployeeScope scope = new EmployeeScope(ageRollup, () -> employees.values().stream(), () -> sketchOf(employees.values()));
+            private transient boolean frozen;
+            private transient Team parent;
+
+            private transient final AtomicLong employeesVersion = new AtomicLong();      // NOTE - Bumped on every change to employees, invalidates the sorted view
+            private transient volatile OrderedEmployees orderedEmployees;
+
             public Manager(Integer id, Employee.SortOrder sortOrderOfDataOrEmployees, CSVData.SortDirection sortDirectionOfEmployees) {
                 this.id = id;
                 this.sortOrderOfDataOrEmployees = sortOrderOfDataOrEmployees;
@@ -255,7 +1015,7 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
                 if (Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
                     employees = new LinkedHashMap <>();
                 else
-                    employees = new TreeMap<>();
+                    employees = new ConcurrentSkipListMap<>();
             }
 
             @JsonIgnore
@@ -265,58 +1025,133 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
 
             public void addEmployee(Integer id, Employee employee) {
                 Objects.requireNonNull(id); Objects.requireNonNull(employee);
-                employees.put(id, employee);
+                checkNotFrozen(frozen);
+                Employee previous = employees.put(id, employee);
+                employeesVersion.incrementAndGet();
+                if (previous != employee) {
+                    if (null != previous)
+                        rollupChanged(-previous.getBirthdateEpochDay(), -1);
+                    rollupChanged(employee.getBirthdateEpochDay(), 1);
+                }
+            }
+            private boolean addEmployeeIfAbsent(Integer id, Employee employee) {
+                if (null != employees.putIfAbsent(id, employee))
+                    return false;
+                employeesVersion.incrementAndGet();
+                rollupChanged(employee.getBirthdateEpochDay(), 1);
+                return true;
             }
             public Employee createEmployee(Integer id, String firstName, String lastName, String birthdate) {
                 return new Employee(id, firstName, lastName, birthdate);
             }
+            public Employee createEmployee(Integer id, String firstName, String lastName, int birthdateEpochDay) {
+                return new Employee(id, firstName, lastName, birthdateEpochDay);
+            }
 
             public Map<Integer, Employee> getEmployees() {
                 return Collections.unmodifiableMap(employees);  
             }
 
+            @JsonIgnore
+            public AgeRollup getAgeRollup() {
+                return ageRollup;
+            }
+
+            /**
+             * @return birthdates of the employees, kept until the rollup changes
+             */
+            @JsonIgnore
+            public BirthdateSketch getBirthdateSketch() {
+                return scope.getBirthdateSketch();
+            }
+
+            /**
+             * @return the employees born from the first to the last date inclusive, lazily in birthdate order, the index is sorted once and kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesBornBetween(LocalDate firstBirthdate, LocalDate lastBirthdate) {
+                return scope.findEmployeesBornBetween(firstBirthdate, lastBirthdate);
+            }
+            /**
+             * @return the employees whose last name starts with the prefix, case-sensitive, lazily in last name order, the index is kept until the rollup changes
+             */
+            public Iterator<Employee> findEmployeesWithLastNamePrefix(String prefix) {
+                return scope.findEmployeesWithLastNamePrefix(prefix);
+            }
+
+            private void rollupChanged(long birthdateEpochDays, long employees) {
+                ageRollup.add(birthdateEpochDays, employees);
+                if (null != parent)
+                    parent.rollupChanged(birthdateEpochDays, employees);
+            }
+
+            private void absorb(Manager later) {
+                later.employees.forEach(this::addEmployeeIfAbsent);
+            }
+
             @JsonProperty("employees")
             public Map<Integer, Employee> getOrderedEmployees() {
 
-                Map<Integer, Employee> orderedMapOfEmployees;
                 if ((Employee.SortOrder.ID == sortOrderOfDataOrEmployees && CSVData.SortDirection.ASCENDING == sortDirectionOfEmployees) || Employee.SortOrder.ORIGINAL == sortOrderOfDataOrEmployees)
-                    orderedMapOfEmployees = employees;
-                else {
-                    Comparator<Integer> valueComparator = (k1, k2) -> {
-                          Employee e1 = employees.get(k1);
-                          Employee e2 = employees.get(k2);
-                          int compare = 0;
-                          if(null != e1 && null != e2) {
-                              switch (sortOrderOfDataOrEmployees) {
-                                case ID:
-                                    compare = Integer.valueOf(e1.id).compareTo(Integer.valueOf(e2.id)); 
-                                    break;      
-                                case LASTNAME:
-                                    compare = e1.lastName.compareTo(e2.lastName);       
-                                    break;                          
-                                case FIRSTNAME:
-                                    compare = e1.firstName.compareTo(e2.firstName);     
-                                    break;  
-                                case BIRTHDATE:
-                                    compare = e1.birthdate.compareTo(e2.birthdate);     
-                                    break;
-                                default:
-                                    assert false;
-                                    break;
-                              }
-                              if (CSVData.SortDirection.DESCENDING == sortDirectionOfEmployees)
-                                  compare = -compare;
-                          }
-                          else
-                              throw new NullPointerException("Comparator does not support null values");
-                          return compare;
-                    };
-
-                    Map<Integer, Employee> sortedMapOfEmployees = new TreeMap<>(valueComparator);
-                    sortedMapOfEmployees.putAll(employees);
-                    orderedMapOfEmployees = sortedMapOfEmployees;
+                    return employees;
+
+                OrderedEmployees cached = orderedEmployees;
+                long version = employeesVersion.get();
+                if (null == cached || cached.version != version) {
+                    long startNanos = System.nanoTime();
+                    cached = new OrderedEmployees(version, sortEmployees());
+                    SurveyMetrics.global().addNanos(SurveyMetrics.Stage.SORT, 1, System.nanoTime() - startNanos);
+                    orderedEmployees = cached;
                 }
-                return orderedMapOfEmployees;
+                return cached.employees;
+            }
+
+            /**
+             * Sort on keys extracted once per employee, ties keep the id order of the underlying map so no employee is lost
+             */
+            private Map<Integer, Employee> sortEmployees() {
+
+                Employee[] sortedEmployees = employees.values().toArray(new Employee[0]);
+                int[] indices = new int[sortedEmployees.length];
+                for (int i = 0; i < indices.length; i++)
+                    indices[i] = i;
+
+                IntBinaryOperator comparator;
+                switch (sortOrderOfDataOrEmployees) {
+                    case ID: {
+                        int[] keys = new int[sortedEmployees.length];
+                        for (int i = 0; i < keys.length; i++)
+                            keys[i] = sortedEmployees[i].id;
+                        comparator = (i1, i2) -> Integer.compare(keys[i1], keys[i2]);
+                        break;
+                    }
+                    case LASTNAME:
+                    case FIRSTNAME: {
+                        String[] keys = new String[sortedEmployees.length];
+                        for (int i = 0; i < keys.length; i++)
+                            keys[i] = Employee.SortOrder.LASTNAME == sortOrderOfDataOrEmployees ? sortedEmployees[i].lastName : sortedEmployees[i].firstName;
+                        comparator = (i1, i2) -> keys[i1].compareTo(keys[i2]);
+                        break;
+                    }
+                    case BIRTHDATE: {
+                        long[] keys = new long[sortedEmployees.length];
+                        for (int i = 0; i < keys.length; i++)
+                            keys[i] = sortedEmployees[i].getBirthdateEpochDay();
+                        comparator = (i1, i2) -> Long.compare(keys[i1], keys[i2]);
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Unsupported sort order " + sortOrderOfDataOrEmployees);
+                }
+                if (CSVData.SortDirection.DESCENDING == sortDirectionOfEmployees) {
+                    IntBinaryOperator ascending = comparator;
+                    comparator = (i1, i2) -> ascending.applyAsInt(i2, i1);
+                }
+                IndexSort.sort(indices, 0, indices.length, comparator);
+
+                Map<Integer, Employee> sortedMapOfEmployees = new LinkedHashMap<>();
+                for (int index : indices)
+                    sortedMapOfEmployees.put(sortedEmployees[index].id, sortedEmployees[index]);
+                return Collections.unmodifiableMap(sortedMapOfEmployees);
             }
 
             @Override                   
@@ -326,23 +1161,71 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
         }
 
         /**
-         * Class representing employee in survey data
+         * Sorted immutable view of the employees of a manager, tagged with the version it was built from
          */
+        private final static class OrderedEmployees {
+            private final long version;
+            private final Map<Integer, Employee> employees;
+
+            private OrderedEmployees(long version, Map<Integer, Employee> employees) {
+                this.version = version;
+                this.employees = employees;
+            }
+        }
+
+        /**
+         * Columns of the survey CSV, in file order
+         */
+        public enum Column {
+            DIVISION_ID,
+            TEAM_ID,
+            MANAGER_ID,
+            EMPLOYEE_ID,
+            FIRST_NAME,
+            LAST_NAME,
+            BIRTHDATE;
+
+            /**
+             * @return the columns with those always parsed added, ids and birthdate build the hierarchy and the age rollups, a name sorted by is needed to sort
+             */
+            static Set<Column> projection(Set<Column> columns, Employee.SortOrder sortOrderOfDataOrEmployees) {
+                Set<Column> projection = EnumSet.of(DIVISION_ID, TEAM_ID, MANAGER_ID, EMPLOYEE_ID, BIRTHDATE);
+                projection.addAll(columns);
+                if (Employee.SortOrder.FIRSTNAME == sortOrderOfDataOrEmployees)
+                    projection.add(FIRST_NAME);
+                else if (Employee.SortOrder.LASTNAME == sortOrderOfDataOrEmployees)
+                    projection.add(LAST_NAME);
+                return projection;
+            }
+        }
+
+        /**
+         * Class representing employee in survey data, names are null when their column was not parsed
+         */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         public final static class Employee {
 
             private final int id;
             private final String firstName;
             private final String lastName;          
-            private final String birthdate;
-
-            private transient final LocalDate birthdateDateType;
+            private final int birthdateEpochDay;            // NOTE - Canonical birthdate, the date and text forms are created on demand
+            private final String paddedBirthdate;           // NOTE - Text as given when it has leading zeros, which encode would drop, null otherwise
 
             public Employee(int id, String firstName, String lastName, String birthdate) {
+                this(id, firstName, lastName, CSVDates.decodeEpochDay(birthdate), CSVDates.isPadded(birthdate) ? birthdate : null);
+            }
+            public Employee(int id, String firstName, String lastName, LocalDate birthdate) {
+                this(id, firstName, lastName, Math.toIntExact(birthdate.toEpochDay()));
+            }
+            public Employee(int id, String firstName, String lastName, int birthdateEpochDay) {
+                this(id, firstName, lastName, birthdateEpochDay, null);
+            }
+            private Employee(int id, String firstName, String lastName, int birthdateEpochDay, String paddedBirthdate) {
                 this.id = id;
                 this.firstName = firstName;
                 this.lastName = lastName;
-                this.birthdate = birthdate;
-                this.birthdateDateType = LocalDate.parse(birthdate, FORMATTER);         // NOTE - Formatter is not thread safe
+                this.birthdateEpochDay = birthdateEpochDay;
+                this.paddedBirthdate = paddedBirthdate;
             }
 
             public int getId() {
@@ -354,17 +1237,24 @@ public final class SurveyCSVParser extends CSVParser implements Parser {
             public String getLastName() {
                 return lastName;
             }
+            /**
+             * @return the birthdate as it was read, yyyy-M-d unless the CSV padded it
+             */
             public String getBirthdate() {
-                return birthdate;
+                return null != paddedBirthdate ? paddedBirthdate : CSVDates.encode(birthdateEpochDay);
             }
             @JsonIgnore
             public LocalDate getBirthdateDateType() {
-                return birthdateDateType;
+                return LocalDate.ofEpochDay(birthdateEpochDay);
+            }
+            @JsonIgnore
+            public long getBirthdateEpochDay() {
+                return birthdateEpochDay;
             }
 
             @Override                   
             public String toString() {
-                return "(id='" + id + "', firstName='" + firstName + "', lastName='" + lastName + "', birthdate='" + birthdate + "')";
+                return "(id='" + id + "', firstName='" + firstName + "', lastName='" + lastName + "', birthdate='" + getBirthdate() + "')";
             }
 
             public enum SortOrder {
@@ -0,0 +1,186 @@
+package org.employee.survey.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVDates;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+
+/**
+ * Versioned binary image of parsed survey data, so a restart against an unchanged CSV skips text parsing
+ *
+ * Layout is a fixed header, a dictionary of distinct names and padded birthdates, then the hierarchy depth first as ids and counts,
+ * each employee being its id, two name indexes, an epoch-day birthdate and the index of its padded birthdate or -1. The body is covered by a CRC32 and the header records
+ * the size and modification time of the CSV it was taken from, a snapshot failing any check is ignored.
+ */
+final class SurveyCSVSnapshot {
+
+    private static final int MAGIC = 0x53565953;            // NOTE - "SVYS"
+    private static final int HEADER_BYTES = 48;
+
+    private SurveyCSVSnapshot() {
+    }
+
+    /**
+     * Write the data through a temporary file moved into place, so readers never see a partial snapshot
+     * @param csvSize size of the CSV when parsing started
+     * @param csvLastModified modification time of the CSV when parsing started
+     */
+    static void write(SurveyCSVData surveyData, long csvSize, long csvLastModified, File snapshotFile) throws IOException {
+        Path snapshotPath = snapshotFile.toPath();
+        Path temporaryPath = Files.createTempFile(snapshotPath.toAbsolutePath().getParent(), snapshotFile.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                CRC32 checksum = new CRC32();
+                DataOutputStream body = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), checksum));
+
+                // Dictionary of distinct names, pooled names make the lookups cheap, the few padded birthdates join them
+                Map<String, Integer> nameIndexes = new HashMap<>();
+                forEachEmployee(surveyData, employee -> {
+                    nameIndexes.putIfAbsent(employee.getFirstName(), nameIndexes.size());
+                    nameIndexes.putIfAbsent(employee.getLastName(), nameIndexes.size());
+                    if (true == CSVDates.isPadded(employee.getBirthdate()))
+                        nameIndexes.putIfAbsent(employee.getBirthdate(), nameIndexes.size());
+                });
+                String[] names = new String[nameIndexes.size()];
+                nameIndexes.forEach((name, index) -> names[index] = name);
+                for (String name : names) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    body.writeInt(bytes.length);
+                    body.write(bytes);
+                }
+
+                int employeeCount = 0;
+                body.writeInt(surveyData.getDivisions().size());
+                for (SurveyCSVData.Division division : surveyData.getDivisions().values()) {
+                    body.writeInt(division.getId());
+                    body.writeInt(division.getTeams().size());
+                    for (SurveyCSVData.Team team : division.getTeams().values()) {
+                        body.writeInt(team.getId());
+                        body.writeInt(team.getManagers().size());
+                        for (SurveyCSVData.Manager manager : team.getManagers().values()) {
+                            body.writeInt(manager.getId());
+                            body.writeInt(manager.getEmployees().size());
+                            for (SurveyCSVData.Employee employee : manager.getEmployees().values()) {
+                                body.writeInt(employee.getId());
+                                body.writeInt(nameIndexes.get(employee.getFirstName()));
+                                body.writeInt(nameIndexes.get(employee.getLastName()));
+                                body.writeInt((int)employee.getBirthdateEpochDay());
+                                body.writeInt(true == CSVDates.isPadded(employee.getBirthdate()) ? nameIndexes.get(employee.getBirthdate()) : -1);
+                                employeeCount++;
+                            }
+                        }
+                    }
+                }
+                body.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putShort(SurveyCSVData.VERSION).putShort((short)surveyData.getSortOrder().ordinal())
+                    .putLong(csvSize).putLong(csvLastModified).putLong(surveyData.getConsumedBytes())
+                    .putInt(names.length).putInt(employeeCount).putLong(checksum.getValue());
+                header.flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+                channel.force(false);
+            }
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Load the data through a memory-mapped read of the snapshot
+     * @return empty if the snapshot is missing, from another version, taken from a different CSV, corrupted, or can not give the order asked for
+     */
+    static Optional<SurveyCSVData> read(File snapshotFile, File csvFile, SurveyCSVData.Employee.SortOrder order, CSVData.SortDirection direction) {
+        if (false == snapshotFile.isFile())
+            return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE)
+                return Optional.empty();
+            MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (MAGIC != snapshot.getInt() || SurveyCSVData.VERSION != snapshot.getShort())
+                return Optional.empty();
+            int snapshotOrdinal = snapshot.getShort();
+            if (snapshotOrdinal != SurveyCSVData.Employee.SortOrder.ORIGINAL.ordinal() && snapshotOrdinal != order.ordinal())
+                return Optional.empty();        // NOTE - Only an ORIGINAL snapshot keeps the CSV order needed to rebuild any other order
+            if (csvFile.length() != snapshot.getLong() || csvFile.lastModified() != snapshot.getLong())
+                return Optional.empty();
+            long consumedBytes = snapshot.getLong();
+            int nameCount = snapshot.getInt();
+            int employeeCount = snapshot.getInt();
+            long expectedChecksum = snapshot.getLong();
+
+            CRC32 checksum = new CRC32();
+            checksum.update((ByteBuffer)snapshot.duplicate().position(HEADER_BYTES));
+            if (expectedChecksum != checksum.getValue())
+                return Optional.empty();
+
+            String[] names = new String[nameCount];
+            byte[] scratch = new byte[64];
+            for (int name = 0; name < nameCount; name++) {
+                int length = snapshot.getInt();
+                if (scratch.length < length)
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                snapshot.get(scratch, 0, length);
+                names[name] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+
+            SurveyCSVData surveyData = new SurveyCSVData(order);
+            int employeesRead = 0;
+            for (int divisions = snapshot.getInt(); divisions > 0; divisions--) {
+                int divisionId = snapshot.getInt();
+                for (int teams = snapshot.getInt(); teams > 0; teams--) {
+                    int teamId = snapshot.getInt();
+                    for (int managers = snapshot.getInt(); managers > 0; managers--) {
+                        int managerId = snapshot.getInt();
+                        for (int employees = snapshot.getInt(); employees > 0; employees--) {
+                            int employeeId = snapshot.getInt();
+                            String firstName = names[snapshot.getInt()], lastName = names[snapshot.getInt()];
+                            int birthdateEpochDay = snapshot.getInt(), paddedBirthdate = snapshot.getInt();
+                            SurveyCSVParser.buildSurveyData(divisionId, teamId, managerId, employeeId, firstName, lastName, birthdateEpochDay, -1 == paddedBirthdate ? null : names[paddedBirthdate],
+                                    surveyData, order, direction);
+                            employeesRead++;
+                        }
+                    }
+                }
+            }
+            if (employeesRead != employeeCount || snapshot.hasRemaining())
+                return Optional.empty();
+
+            surveyData.restoreConsumedBytes(consumedBytes);
+            return Optional.of(surveyData);
+        }
+        catch (IOException | RuntimeException e) {
+            return Optional.empty();            // NOTE - Any unreadable snapshot just means parsing the CSV
+        }
+    }
+
+    private static void forEachEmployee(SurveyCSVData surveyData, Consumer<SurveyCSVData.Employee> action) {
+        surveyData.getDivisions().values().forEach(division -> division.getTeams().values().forEach(team ->
+            team.getManagers().values().forEach(manager -> manager.getEmployees().values().forEach(action))));
+    }
+}
@@ -0,0 +1,122 @@
+package org.employee.survey.parser;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.Parser;
+import org.employee.survey.exception.MalformedCSVException;
+
+/**
+ * Class publishing one frozen version of the survey data at a time, a background parse swaps in the next version atomically
+ *
+ * Readers take a version once per query and use it throughout, e.g. new SurveyAnalyzer(holder.get()), so they always see one consistent
+ * version. The read path is a single volatile read, no locks. Reloads run on one low priority thread of the holder, a reload asked for while
+ * one is running shares it, so a burst of requests costs one parse and the previous version keeps serving until the next is complete.
+ */
+public final class SurveyDataHolder implements AutoCloseable {
+
+    private final Parser parser;
+    private final AtomicReference<Version> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Version>> reloading = new AtomicReference<>();
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "survey-reloader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Parse the first version on the calling thread
+     * @param parser of survey data, run again for every reload
+     */
+    public SurveyDataHolder(Parser parser) throws MalformedCSVException {
+        this.parser = Objects.requireNonNull(parser);
+        current.set(load(1));
+    }
+
+    /**
+     * @return data of the current version, frozen
+     */
+    public SurveyCSVParser.SurveyCSVData get() {
+        return current.get().data;
+    }
+
+    public Version getVersion() {
+        return current.get();
+    }
+
+    /**
+     * Parse the next version in the background and publish it once complete, the current version is kept if the parse fails
+     * @return completed with the version published, shared by every reload asked for before it completes
+     */
+    public CompletableFuture<Version> reload() {
+        while (true) {
+            CompletableFuture<Version> running = reloading.get();
+            if (null != running)
+                return running;
+            CompletableFuture<Version> next = new CompletableFuture<>();
+            if (true == reloading.compareAndSet(null, next)) {
+                reloader.execute(() -> {
+                    try {
+                        Version loaded = load(current.get().number + 1);
+                        current.set(loaded);
+                        reloading.set(null);
+                        next.complete(loaded);
+                    }
+                    catch (Throwable e) {
+                        reloading.set(null);
+                        next.completeExceptionally(e);
+                    }
+                });
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        reloader.shutdownNow();
+    }
+
+    private Version load(long number) throws MalformedCSVException {
+        long startNanos = System.nanoTime();
+        Optional<CSVData> csvData = parser.parse();
+        if (false == csvData.isPresent() || false == csvData.get() instanceof SurveyCSVParser.SurveyCSVData)
+            throw new MalformedCSVException("FAILED to load survey data");
+        return new Version(number, ((SurveyCSVParser.SurveyCSVData)csvData.get()).freeze(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Class representing one published version of the survey data
+     */
+    public static final class Version {
+
+        private final long number;
+        private final SurveyCSVParser.SurveyCSVData data;
+        private final long loadNanos;
+
+        private Version(long number, SurveyCSVParser.SurveyCSVData data, long loadNanos) {
+            this.number = number;
+            this.data = data;
+            this.loadNanos = loadNanos;
+        }
+
+        /**
+         * @return 1 for the first version, one more for each published after it
+         */
+        public long getNumber() {
+            return number;
+        }
+        public SurveyCSVParser.SurveyCSVData getData() {
+            return data;
+        }
+        public long getLoadNanos() {
+            return loadNanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.employee.survey.parser;
+
+import java.util.function.Supplier;
+
+/**
+ * Value derived from a node, kept until the node's version moves on, racing rebuilds are harmless as both give equal values
+ *
+ */
+final class VersionedCache<T> {
+
+    private volatile Versioned<T> versioned;
+
+    T get(long version, Supplier<T> build) {
+        Versioned<T> cached = versioned;
+        if (null == cached || cached.version != version) {
+            cached = new Versioned<>(version, build.get());
+            versioned = cached;
+        }
+        return cached.value;
+    }
+
+    private static final class Versioned<T> {
+        private final long version;
+        private final T value;
+
+        private Versioned(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
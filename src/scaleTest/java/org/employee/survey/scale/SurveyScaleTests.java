@@ -0,0 +1,175 @@
+package org.employee.survey.scale;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.ColumnarSurveyAnalyzer;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.generator.SurveyCSVGenerator;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.ColumnarSurveyData;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Parse, analyze and export generated surveys of one million rows upwards, checking time and retained heap per row
+ *
+ * Sizes run are 1M, 10M and 50M rows up to the survey.scale.rows system property, the object model stops at 10M as it does not
+ * fit a few gigabytes of heap beyond that. CI runs the default of 1M rows in a fixed 4g heap, 10M needs 8g for the object model.
+ * Budgets are per row, 2 to 3 times the medians of six runs on a single core with 1M rows in 4g, object model then columnar:
+ * parse 9.5 us and 3.1 us, analyze 0.24 us and 0.07 us, export 1.7 us and 1.2 us, retained 120 and 54 bytes.
+ */
+public class SurveyScaleTests {
+
+    private static final long[] SIZES = {1_000_000, 10_000_000, 50_000_000};
+    private static final long MAX_OBJECT_MODEL_ROWS = 10_000_000;
+
+    private static final Budget OBJECT_MODEL_BUDGET = new Budget(24_000, 600, 4_500, 256);
+    private static final Budget COLUMNAR_BUDGET = new Budget(8_000, 200, 3_000, 128);
+
+    private static final LocalDate REFERENCE_DATE = LocalDate.of(2020, 1, 1);
+    private static final Map<Long, Path> GENERATED_CSV_FILES = new HashMap<>();
+
+    @AfterClass
+    public static void deleteGeneratedFiles() throws IOException {
+        for (Path csvFilePath : GENERATED_CSV_FILES.values())
+            Files.deleteIfExists(csvFilePath);
+    }
+
+    @Test
+    public void testObjectModel_withinBudgets() throws Exception {
+
+        for (long rows : sizes()) {
+            if (rows > MAX_OBJECT_MODEL_ROWS)
+                continue;
+            Path csvFilePath = generatedCSV(rows);
+
+            long heapBefore = usedHeapAfterGC();
+            long start = System.nanoTime();
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING).parse().get();
+            long parseNanos = System.nanoTime() - start;
+            long retainedBytes = usedHeapAfterGC() - heapBefore;
+            assertEquals(rows, surveyData.getAgeRollup().getNumberOfEmployees());
+
+            checkBudgets("object", rows, parseNanos, new SurveyAnalyzer(surveyData), new JSONWriter(surveyData), retainedBytes, OBJECT_MODEL_BUDGET);
+        }
+    }
+
+    @Test
+    public void testColumnarModel_withinBudgets() throws Exception {
+
+        for (long rows : sizes()) {
+            Path csvFilePath = generatedCSV(rows);
+
+            long heapBefore = usedHeapAfterGC();
+            long start = System.nanoTime();
+            ColumnarSurveyData surveyData = (ColumnarSurveyData)CSVParser.createColumnarSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING).parse().get();
+            long parseNanos = System.nanoTime() - start;
+            long retainedBytes = usedHeapAfterGC() - heapBefore;
+            assertEquals(rows, surveyData.getEmployeeCount());
+
+            checkBudgets("columnar", rows, parseNanos, new ColumnarSurveyAnalyzer(surveyData), new JSONWriter(surveyData), retainedBytes, COLUMNAR_BUDGET);
+        }
+    }
+
+    private static void checkBudgets(String model, long rows, long parseNanos, AgeCalculator ageCalculator, JSONWriter writerOfJson,
+            long retainedBytes, Budget budget) throws IOException {
+        long start = System.nanoTime();
+        Map<AgeCalculator.Scope, Map<Integer, Period>> averageAges = ageCalculator.getAllAverageAges(REFERENCE_DATE);
+        long analyzeNanos = System.nanoTime() - start;
+        assertEquals(1, averageAges.get(AgeCalculator.Scope.COMPANY).size());
+
+        CountingOutputStream discard = new CountingOutputStream();
+        start = System.nanoTime();
+        writerOfJson.write(discard);
+        long exportNanos = System.nanoTime() - start;
+        assertTrue(discard.count > rows);
+
+        System.out.println(model + " " + rows + " rows: parse " + TimeUnit.NANOSECONDS.toMillis(parseNanos) + " ms, analyze " + TimeUnit.NANOSECONDS.toMillis(analyzeNanos)
+                + " ms, export " + TimeUnit.NANOSECONDS.toMillis(exportNanos) + " ms, retained " + retainedBytes / rows + " bytes per row");
+        assertTrue(model + " parse of " + rows + " rows took " + parseNanos / rows + " ns per row", parseNanos <= rows * budget.parseNanosPerRow);
+        assertTrue(model + " analysis of " + rows + " rows took " + analyzeNanos / rows + " ns per row", analyzeNanos <= rows * budget.analyzeNanosPerRow);
+        assertTrue(model + " export of " + rows + " rows took " + exportNanos / rows + " ns per row", exportNanos <= rows * budget.exportNanosPerRow);
+        assertTrue(model + " model of " + rows + " rows retains " + retainedBytes / rows + " bytes per row", retainedBytes <= rows * budget.bytesPerRow);
+    }
+
+    private static List<Long> sizes() {
+        long maxRows = Long.getLong("survey.scale.rows", SIZES[0]);
+        List<Long> sizes = new ArrayList<>();
+        for (long rows : SIZES) {
+            if (rows <= maxRows)
+                sizes.add(rows);
+        }
+        if (true == sizes.isEmpty())
+            sizes.add(maxRows);         // NOTE - Smaller runs for a quick check
+        return sizes;
+    }
+
+    private static Path generatedCSV(long rows) throws IOException {
+        Path csvFilePath = GENERATED_CSV_FILES.get(rows);
+        if (null == csvFilePath) {
+            csvFilePath = Files.createTempFile("survey-scale-" + rows + "-", ".csv");
+            GENERATED_CSV_FILES.put(rows, csvFilePath);
+            // NOTE - Fan-out grows with the rows so managers keep about ten employees each
+            int divisions = (int)Math.max(1, rows / (10 * 5 * 15));
+            SurveyCSVGenerator.builder().seed(rows).rows(rows).fanOut(divisions, 15, 5).names(5000, 2000, 1.0).build().write(csvFilePath);
+        }
+        return csvFilePath;
+    }
+
+    private static long usedHeapAfterGC() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++)
+            memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Per row limits of one model
+     */
+    private static final class Budget {
+        private final long parseNanosPerRow;
+        private final long analyzeNanosPerRow;
+        private final long exportNanosPerRow;
+        private final long bytesPerRow;
+
+        private Budget(long parseNanosPerRow, long analyzeNanosPerRow, long exportNanosPerRow, long bytesPerRow) {
+            this.parseNanosPerRow = parseNanosPerRow;
+            this.analyzeNanosPerRow = analyzeNanosPerRow;
+            this.exportNanosPerRow = exportNanosPerRow;
+            this.bytesPerRow = bytesPerRow;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.employee.application;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SurveyBatchTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testBatch_queries_answeredInOrderFromOneParse() throws Exception {
+
+        File csvFile = Paths.get("data", "data.csv").toFile();
+        List<String> parsed = new ArrayList<>();
+        SurveyBatch batch = new SurveyBatch((order, direction) -> {
+            parsed.add(order + " " + direction);
+            return CSVParser.createSurveyParser(csvFile, order, direction);
+        }, SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+
+        List<String> lines = new ArrayList<>(Arrays.asList("# Sample queries", "AGE TEAM 12 2020-01-01", "", "DISTRIBUTION COMPANY 2020-01-01", "SUBTREE 1 5 1 LASTNAME DESC",
+                "AGE PLANET 1", "SUBTREE -1"));
+        for (int query = 0; query < 200; query++)
+            lines.add("AGE MANAGER " + (query % 5 + 1) + " 2020-01-01");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SurveyBatch.Summary summary;
+        try {
+            summary = batch.run(lines, output, executor, 1);
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(205, summary.getQueries());
+        assertEquals(2, summary.getErrors());
+        assertEquals(Arrays.asList("ORIGINAL ASCENDING"), parsed);
+
+        String[] results = output.toString("UTF-8").split("\n");
+        assertEquals(205, results.length);
+        int previousLine = 0;
+        for (String result : results) {
+            int line = ((Number)MAPPER.readValue(result, Map.class).get("line")).intValue();
+            assertTrue(line > previousLine);
+            previousLine = line;
+        }
+
+        SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFile).parse().get();
+        Map<?, ?> age = (Map<?, ?>)MAPPER.readValue(results[0], Map.class).get("result");
+        assertEquals(new SurveyAnalyzer(surveyData).getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), LocalDate.of(2020, 1, 1)).getYears(), ((Map<?, ?>)age.get("averageAge")).get("years"));
+        Map<?, ?> distribution = (Map<?, ?>)MAPPER.readValue(results[1], Map.class).get("result");
+        assertEquals(surveyData.getAgeRollup().getNumberOfEmployees(), ((Number)distribution.get("employees")).longValue());
+
+        SurveyCSVData sortedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFile, SurveyCSVData.Employee.SortOrder.LASTNAME, CSVData.SortDirection.DESCENDING).parse().get();
+        ByteArrayOutputStream managerJson = new ByteArrayOutputStream();
+        JSONWriter.write(managerJson, sortedData.getDivisions().get(1).getTeams().get(5).getManagers().get(1));
+        assertEquals(MAPPER.readTree(managerJson.toByteArray()), MAPPER.readTree(results[2]).get("result"));
+
+        assertTrue(MAPPER.readValue(results[3], Map.class).containsKey("error"));
+        assertEquals("No division -1", MAPPER.readValue(results[4], Map.class).get("error"));
+    }
+}
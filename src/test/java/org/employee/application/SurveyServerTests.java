@@ -0,0 +1,141 @@
+package org.employee.application;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SurveyServerTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testServer_queries_matchResidentData() throws Exception {
+
+        try (SurveyServer server = new SurveyServer(CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING), 0, 2)) {
+            SurveyCSVData surveyData = server.getSurveyData();
+            LocalDate referenceDate = LocalDate.of(2020, 1, 1);
+
+            Map<?, ?> age = MAPPER.readValue(get(server, "/age?scope=team&id=12&date=2020-01-01", 200), Map.class);
+            assertEquals(new SurveyAnalyzer(surveyData).getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate).getYears(), ((Map<?, ?>)age.get("averageAge")).get("years"));
+
+            Map<?, ?> distribution = MAPPER.readValue(get(server, "/distribution?scope=COMPANY&date=2020-01-01", 200), Map.class);
+            assertEquals(surveyData.getAgeRollup().getNumberOfEmployees(), ((Number)distribution.get("employees")).longValue());
+
+            SurveyCSVData.Manager manager = surveyData.getDivisions().get(1).getTeams().get(5).getManagers().get(1);
+            ByteArrayOutputStream managerJson = new ByteArrayOutputStream();
+            JSONWriter.write(managerJson, manager);
+            assertEquals(managerJson.toString("UTF-8"), get(server, "/subtree?division=1&team=5&manager=1", 200));
+
+            SurveyCSVData.Employee employee = manager.getEmployees().values().iterator().next();
+            Map<?, ?> lookup = MAPPER.readValue(get(server, "/employee?id=" + employee.getId(), 200), Map.class);
+            assertTrue(lookup.get("employees").toString().contains(employee.getLastName()));
+
+            get(server, "/employee?id=-12345", 404);
+            get(server, "/subtree?division=-1", 404);
+            get(server, "/age?scope=TEAM", 400);
+            get(server, "/age?scope=PLANET", 400);
+            get(server, "/reload", 405);
+            assertTrue(get(server, "/metrics", 200).contains("server/age"));
+        }
+    }
+
+    @Test
+    public void testServer_reload_swapsVersionInBackground() throws Exception {
+
+        try (SurveyServer server = new SurveyServer(CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile()), 0, 1)) {
+            SurveyCSVData before = server.getSurveyData();
+            assertTrue(before.isFrozen());
+
+            HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + server.getPort() + "/reload").openConnection();
+            connection.setRequestMethod("POST");
+            assertEquals(202, connection.getResponseCode());
+            Map<?, ?> reload = MAPPER.readValue(connection.getInputStream(), Map.class);
+            assertEquals(before.getAgeRollup().getNumberOfEmployees(), ((Number)reload.get("employees")).longValue());
+
+            long version = server.reload().get().getNumber();
+            assertTrue(version > 1);
+            assertNotSame(before, server.getSurveyData());
+            assertTrue(server.getSurveyData().isFrozen());
+            get(server, "/age?scope=COMPANY", 200);
+        }
+    }
+
+    @Test
+    public void testServer_overload_busyThen503ThenClosed() throws Exception {
+
+        try (SurveyServer server = new SurveyServer(CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile()), 0, 1, 1, 1)) {
+            // Hold the request thread with one more task queued behind it, and the overload thread
+            CountDownLatch release = new CountDownLatch(1);
+            Runnable blocked = () -> {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            server.getExecutor().execute(blocked);
+            server.getExecutor().execute(blocked);
+            server.getOverloadExecutor().execute(blocked);
+            while (server.getExecutor().getActiveCount() < 1 || server.getOverloadExecutor().getActiveCount() < 1)
+                Thread.sleep(1);
+
+            // The first request waits for the overload thread, the next is refused and its connection closed unanswered
+            FutureTask<HttpURLConnection> shed = new FutureTask<>(() -> {
+                HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + server.getPort() + "/age?scope=COMPANY").openConnection();
+                connection.getResponseCode();
+                return connection;
+            });
+            new Thread(shed).start();
+            while (server.getOverloadExecutor().getQueue().isEmpty())
+                Thread.sleep(1);
+            try {
+                get(server, "/age?scope=COMPANY", 200);
+                fail("Request past the overload queue was answered");
+            }
+            catch (IOException e) {
+                // NOTE - Expected, the HttpServer closes a connection whose exchange is rejected
+            }
+
+            release.countDown();
+            HttpURLConnection busy = shed.get(10, TimeUnit.SECONDS);
+            assertEquals(503, busy.getResponseCode());
+            assertEquals("1", busy.getHeaderField("Retry-After"));
+            get(server, "/age?scope=COMPANY", 200);
+        }
+    }
+
+    private static String get(SurveyServer server, String pathAndQuery, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + server.getPort() + pathAndQuery).openConnection();
+        assertEquals(pathAndQuery, expectedStatus, connection.getResponseCode());
+        try (InputStream body = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = body.read(buffer)) > 0; )
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -2,12 +2,19 @@ package org.employee.survey.analysis;
 
 import static org.junit.Assert.*;
 
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.parser.ColumnarSurveyData;
 import org.employee.survey.parser.SurveyCSVParser;
 
 import org.junit.Test;
@@ -58,6 +65,120 @@ public class SurveyAnalyzerTests {
         analysis.getAverageAge(AgeCalculator.Scope.DIVISION, null);     
     }
 
+    @Test
+    public void test_ReferenceDate_success() throws AgeCalculator.AgeCalculatorException {
+
+        SurveyCSVParser.SurveyCSVData surveyData = buildSampleData();
+
+        SurveyAnalyzer analysis = new SurveyAnalyzer(surveyData);
+        Period period = analysis.getAverageAge(AgeCalculator.Scope.MANAGER, Optional.of(1), LocalDate.now().plusDays(10));
+        assertEquals(11, period.getDays());     
+    }
+
+    @Test
+    public void test_RollupsFollowReplacedEmployee_success() throws AgeCalculator.AgeCalculatorException {
+
+        SurveyCSVParser.SurveyCSVData surveyData = buildSampleData();
+        SurveyCSVParser.SurveyCSVData.Manager manager = surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1);
+
+        // Added after the manager is attached, replaces employee 2
+        manager.addEmployee(2, manager.createEmployee(2, "Stuart L", "Mackintosh", LocalDate.now().minusDays(4).format(FORMATTER)));
+
+        SurveyAnalyzer analysis = new SurveyAnalyzer(surveyData);
+        assertEquals(2, surveyData.getAgeRollup().getNumberOfEmployees());
+        assertEquals(2, analysis.getAverageAge(AgeCalculator.Scope.COMPANY, Optional.empty()).getDays());
+        assertEquals(2, analysis.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(1)).getDays());
+        assertTrue(analysis.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(2)).equals(Period.ZERO));
+    }
+
+    @Test
+    public void test_BatchAverageAges_success() throws AgeCalculator.AgeCalculatorException {
+
+        SurveyCSVParser.SurveyCSVData surveyData = buildSampleData();
+        SurveyCSVParser.SurveyCSVData.Team team = surveyData.getDivisions().get(1).createTeam(2);
+        SurveyCSVParser.SurveyCSVData.Manager manager = team.createManager(3, CSVData.SortDirection.ASCENDING);
+        manager.addEmployee(3, manager.createEmployee(3, "Stuart", "Mackintosh", LocalDate.now().minusDays(7).format(FORMATTER)));
+        team.addManager(3, manager);
+        surveyData.getDivisions().get(1).addTeam(2, team);
+
+        SurveyAnalyzer analysis = new SurveyAnalyzer(surveyData);
+        LocalDate referenceDate = LocalDate.now();
+        Map<AgeCalculator.Scope, Map<Integer, Period>> averageAges = analysis.getAllAverageAges(referenceDate);
+
+        assertEquals(AgeCalculator.Scope.values().length, averageAges.size());
+        assertEquals(1, averageAges.get(AgeCalculator.Scope.COMPANY).size());
+        assertEquals(analysis.getAverageAge(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate), averageAges.get(AgeCalculator.Scope.COMPANY).get(AgeCalculator.COMPANY_ID));
+        for (AgeCalculator.Scope scope : new AgeCalculator.Scope[] {AgeCalculator.Scope.DIVISION, AgeCalculator.Scope.TEAM, AgeCalculator.Scope.MANAGER}) {
+            for (Map.Entry<Integer, Period> averageAge : averageAges.get(scope).entrySet())
+                assertEquals(analysis.getAverageAge(scope, Optional.of(averageAge.getKey()), referenceDate), averageAge.getValue());
+            assertEquals(averageAges.get(scope), analysis.getAverageAges(scope, referenceDate));
+        }
+        assertArrayEquals(new Integer[] {1, 2}, averageAges.get(AgeCalculator.Scope.TEAM).keySet().toArray());
+        assertEquals(7, averageAges.get(AgeCalculator.Scope.MANAGER).get(3).getDays());
+    }
+
+    @Test
+    public void test_AgeDistribution_matchesSortedAges_success() throws Exception {
+
+        SurveyCSVParser.SurveyCSVData surveyData = (SurveyCSVParser.SurveyCSVData)CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile()).parse().get();
+        ColumnarSurveyData columnarData = (ColumnarSurveyData)CSVParser.createColumnarSurveyParser(Paths.get("data", "data.csv").toFile(),
+                SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING).parse().get();
+        AgeCalculator[] analyzers = {new SurveyAnalyzer(surveyData), new ColumnarSurveyAnalyzer(columnarData)};
+        LocalDate referenceDate = LocalDate.of(2020, 2, 29);
+
+        for (AgeCalculator.Scope scope : AgeCalculator.Scope.values()) {
+            for (Integer id : analyzers[0].getAverageAges(scope, referenceDate).keySet()) {
+                // Ages of every employee in the scope, youngest first
+                List<Period> ages = new ArrayList<>();
+                for (SurveyCSVParser.SurveyCSVData.Division division : surveyData.getDivisions().values())
+                    for (SurveyCSVParser.SurveyCSVData.Team team : division.getTeams().values())
+                        for (SurveyCSVParser.SurveyCSVData.Manager manager : team.getManagers().values())
+                            for (SurveyCSVParser.SurveyCSVData.Employee employee : manager.getEmployees().values()) {
+                                int scopeId = AgeCalculator.Scope.DIVISION == scope ? division.getId() : AgeCalculator.Scope.TEAM == scope ? team.getId()
+                                        : AgeCalculator.Scope.MANAGER == scope ? manager.getId() : AgeCalculator.COMPANY_ID;
+                                if (scopeId == id)
+                                    ages.add(Period.between(employee.getBirthdateDateType(), referenceDate));
+                            }
+                ages.sort((a1, a2) -> Long.compare(a1.toTotalMonths() * 31 + a1.getDays(), a2.toTotalMonths() * 31 + a2.getDays()));
+                Map<Integer, Long> bands = new TreeMap<>();
+                for (Period age : ages)
+                    bands.merge(Math.floorDiv(age.getYears(), AgeDistribution.AGE_BAND_YEARS) * AgeDistribution.AGE_BAND_YEARS, 1L, Long::sum);
+
+                for (AgeCalculator analyzer : analyzers) {
+                    AgeDistribution distribution = analyzer.getAgeDistribution(scope, Optional.of(id), referenceDate);
+                    assertEquals(ages.size(), distribution.getNumberOfEmployees());
+                    assertEquals(ages.get((ages.size() + 1) / 2 - 1), distribution.getMedianAge());
+                    assertEquals(ages.get((int)Math.ceil(ages.size() * 0.9) - 1), distribution.getP90Age());
+                    assertEquals(ages.get(0), distribution.getAgeAtPercentile(0));
+                    assertEquals(ages.get(ages.size() - 1), distribution.getAgeAtPercentile(100));
+                    for (Map.Entry<Integer, Long> band : distribution.getAgeBands().entrySet())
+                        assertEquals(bands.getOrDefault(band.getKey(), 0L), band.getValue());
+                    assertTrue(distribution.getAgeBands().keySet().containsAll(bands.keySet()));
+                }
+            }
+        }
+        assertEquals(0, analyzers[0].getAgeDistribution(AgeCalculator.Scope.TEAM, Optional.of(-1), referenceDate).getNumberOfEmployees());
+    }
+
+    @Test
+    public void test_AgeDistribution_followsAddedEmployee_success() throws AgeCalculator.AgeCalculatorException {
+
+        SurveyCSVParser.SurveyCSVData surveyData = buildSampleData();
+        SurveyAnalyzer analysis = new SurveyAnalyzer(surveyData);
+        LocalDate referenceDate = LocalDate.of(2020, 1, 1);
+        assertEquals(2, analysis.getAgeDistribution(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate).getNumberOfEmployees());
+        assertSame(surveyData.getBirthdateSketch(), surveyData.getBirthdateSketch());
+
+        SurveyCSVParser.SurveyCSVData.Manager manager = surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1);
+        manager.addEmployee(3, manager.createEmployee(3, "Stuart", "Mackintosh", "1980-1-1"));
+
+        AgeDistribution distribution = analysis.getAgeDistribution(AgeCalculator.Scope.DIVISION, Optional.of(1), referenceDate);
+        assertEquals(3, distribution.getNumberOfEmployees());
+        assertEquals(Period.of(40, 0, 0), distribution.getAgeAtPercentile(100));
+        assertEquals(Long.valueOf(1), distribution.getAgeBands().get(40));
+        assertEquals(3, analysis.getAgeDistribution(AgeCalculator.Scope.MANAGER, Optional.of(1), referenceDate).getNumberOfEmployees());
+    }
+
     private SurveyCSVParser.SurveyCSVData buildSampleData() {
 
         SurveyCSVParser.SurveyCSVData surveyData = new SurveyCSVParser.SurveyCSVData(SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL);
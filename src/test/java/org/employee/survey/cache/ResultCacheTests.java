@@ -0,0 +1,102 @@
+package org.employee.survey.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Optional;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.CachingAgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.json.CachingJSONWriter;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.Test;
+
+public class ResultCacheTests {
+
+    @Test
+    public void testGet_leastRecentlyUsedEvictedBySize() {
+
+        ResultCache cache = new ResultCache(100);
+        Object source = new Object();
+        assertEquals("a", cache.get(new ResultCache.Key(source, 1, "query", "a"), value -> 40, () -> "a"));
+        assertEquals("b", cache.get(new ResultCache.Key(source, 1, "query", "b"), value -> 40, () -> "b"));
+        assertEquals("a", cache.get(new ResultCache.Key(source, 1, "query", "a"), value -> 40, () -> "computed again"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        cache.get(new ResultCache.Key(source, 1, "query", "c"), value -> 40, () -> "c");
+        assertEquals(1, cache.getEvictions());
+        assertEquals(80, cache.getBytes());
+        assertEquals("a", cache.get(new ResultCache.Key(source, 1, "query", "a"), value -> 40, () -> "not held"));
+        assertEquals("b again", cache.get(new ResultCache.Key(source, 1, "query", "b"), value -> 40, () -> "b again"));
+        assertEquals("c again", cache.get(new ResultCache.Key(source, 1, "query", "c"), value -> 40, () -> "c again"));
+
+        assertEquals("newer", cache.get(new ResultCache.Key(source, 2, "query", "a"), value -> 40, () -> "newer"));
+        assertEquals("too big", cache.get(new ResultCache.Key(source, 1, "query", "big"), value -> 101, () -> "too big"));
+        assertEquals(2, cache.getEntries());
+
+        cache.invalidate(source);
+        assertEquals(0, cache.getEntries());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testCachingAgeCalculator_followsRevision() throws Exception {
+
+        SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile()).parse().get();
+        ResultCache cache = new ResultCache();
+        CachingAgeCalculator calculator = new CachingAgeCalculator(surveyData, cache);
+        LocalDate referenceDate = LocalDate.of(2020, 1, 1);
+
+        Period averageAge = calculator.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate);
+        assertEquals(new SurveyAnalyzer(surveyData).getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate), averageAge);
+        assertSame(averageAge, calculator.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate));
+        assertSame(calculator.getAllAverageAges(referenceDate), calculator.getAllAverageAges(referenceDate));
+        assertEquals(2, cache.getHits());
+
+        calculator.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate.plusDays(1));
+        assertEquals(3, cache.getMisses());
+
+        SurveyCSVData.Manager manager = surveyData.getTeamsWithId(12).get(0).getManagers().values().iterator().next();
+        manager.addEmployee(-1, manager.createEmployee(-1, "Stuart", "Mackintosh", "1900-1-1"));
+        Period changedAge = calculator.getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate);
+        assertEquals(new SurveyAnalyzer(surveyData).getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), referenceDate), changedAge);
+        assertFalse(averageAge.equals(changedAge));
+
+        // A distribution is charged for the birthdates of its sketch, far more than a Period
+        ResultCache sizedCache = new ResultCache();
+        CachingAgeCalculator sizedCalculator = new CachingAgeCalculator(surveyData, sizedCache);
+        sizedCalculator.getAverageAge(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate);
+        long bytesOfPeriod = sizedCache.getBytes();
+        sizedCalculator.getAgeDistribution(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate);
+        assertTrue(sizedCache.getBytes() - bytesOfPeriod > 100 * bytesOfPeriod);
+    }
+
+    @Test
+    public void testCachingJSONWriter_matchesWriter() throws Exception {
+
+        SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile()).parse().get();
+        ResultCache cache = new ResultCache();
+        CachingJSONWriter writer = new CachingJSONWriter(surveyData, cache);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        JSONWriter.write(expected, surveyData.getDivisions().get(1));
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream cached = new ByteArrayOutputStream();
+            assertTrue(writer.writeDivision(cached, 1));
+            assertEquals(expected.toString("UTF-8"), cached.toString("UTF-8"));
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(expected.size(), cache.getBytes());
+        assertFalse(writer.writeDivision(new ByteArrayOutputStream(), -1));
+
+        writer.invalidate();
+        assertEquals(0, cache.getEntries());
+    }
+}
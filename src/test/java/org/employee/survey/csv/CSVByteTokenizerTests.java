@@ -0,0 +1,72 @@
+package org.employee.survey.csv;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class CSVByteTokenizerTests {
+
+    @Test
+    public void testNextLine_fieldsDecoded_success() {
+
+        CSVByteTokenizer tokenizer = tokenizerOf("7,6,2,597,Terrill,Lindgren,1956-7-21\r\n\n-3,+4,0,1,Zo\u00eb,\u00d3,2000-02-29\n");
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals(7, tokenizer.fieldCount());
+        assertEquals(597, tokenizer.intField(3));
+        assertEquals("Lindgren", tokenizer.stringField(5));
+        assertEquals(LocalDate.of(1956, 7, 21).toEpochDay(), tokenizer.epochDayField(6));
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals(-3, tokenizer.intField(0));
+        assertEquals(4, tokenizer.intField(1));
+        assertEquals("Zo\u00eb", tokenizer.stringField(4));
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), tokenizer.epochDayField(6));
+
+        assertFalse(tokenizer.nextLine());
+    }
+
+    @Test
+    public void testNextLine_shortLine_fewerFields() {
+
+        CSVByteTokenizer tokenizer = tokenizerOf("1,2,3");
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals(3, tokenizer.fieldCount());
+    }
+
+    @Test
+    public void testNextLine_emptyFields_skippedLikeStringTokenizer() {
+
+        CSVByteTokenizer tokenizer = tokenizerOf(",1,2,,Smith,\n");
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals(2, tokenizer.intField(1));
+        assertEquals("Smith", tokenizer.stringField(2));
+    }
+
+    @Test(expected=NumberFormatException.class)
+    public void testIntField_badDigit_failure() {
+
+        CSVByteTokenizer tokenizer = tokenizerOf("1,2x,3\n");
+        tokenizer.nextLine();
+        tokenizer.intField(1);
+    }
+
+    @Test(expected=NumberFormatException.class)
+    public void testIntField_overflow_failure() {
+
+        CSVByteTokenizer tokenizer = tokenizerOf("2147483648\n");
+        tokenizer.nextLine();
+        tokenizer.intField(0);
+    }
+
+    private CSVByteTokenizer tokenizerOf(String content) {
+        return new CSVByteTokenizer(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), ',', 7);
+    }
+}
@@ -0,0 +1,69 @@
+package org.employee.survey.csv;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class CSVDatesTests {
+
+    @Test
+    public void testDecodeAndEncode_matchLocalDate_success() {
+
+        for (LocalDate date = LocalDate.of(1800, 1, 1); date.getYear() < 2200; date = date.plusDays(1)) {
+            String text = date.getYear() + "-" + date.getMonthValue() + "-" + date.getDayOfMonth();
+            assertEquals(date.toEpochDay(), CSVDates.decodeEpochDay(text));
+            assertEquals(text, CSVDates.encode((int)date.toEpochDay()));
+        }
+        assertEquals(LocalDate.of(1, 1, 1).toEpochDay(), CSVDates.decodeEpochDay("0001-01-01"));
+        assertEquals(LocalDate.of(9999, 12, 31).toEpochDay(), CSVDates.decodeEpochDay("9999-12-31"));
+        assertEquals("1-1-1", CSVDates.encode((int)LocalDate.of(1, 1, 1).toEpochDay()));
+    }
+
+    @Test
+    public void testIsPadded_leadingZeros_success() {
+
+        String[] dates = {"1990-7-5", "1990-10-20", "1990-07-5", "1990-7-05", "0990-7-5"};
+        for (int i = 0; i < dates.length; i++) {
+            byte[] bytes = ("," + dates[i] + ",").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(i > 1, CSVDates.isPadded(dates[i]));
+            assertEquals(i > 1, CSVDates.isPadded(ByteBuffer.wrap(bytes), 1, bytes.length - 1));
+        }
+    }
+
+    @Test
+    public void testDecodeBytes_inPlace_success() {
+
+        ByteBuffer bytes = ByteBuffer.wrap("x,1956-7-21,x".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(LocalDate.of(1956, 7, 21).toEpochDay(), CSVDates.decodeEpochDay(bytes, 2, 11));
+        assertEquals(0, bytes.position());
+    }
+
+    @Test
+    public void testDecode_invalidDates_failure() {
+
+        String[] invalidDates = {"", "1990", "1990-1", "1990-1-", "-1-1", "1990--1", "1990-1-1-", "90-1-1", "19900-1-1", "1990-001-1",
+                "1990-1-1 ", "1990/1/1", "0000-1-1", "1990-0-1", "1990-13-1", "1990-1-0", "1990-4-31", "1900-2-29", "2001-2-29"};
+        for (String invalidDate : invalidDates) {
+            try {
+                CSVDates.decodeEpochDay(invalidDate);
+                fail("Accepted invalid date '" + invalidDate + "'");
+            }
+            catch (DateTimeException e) {
+                assertNotNull(e.getMessage());
+            }
+            try {
+                byte[] bytes = invalidDate.getBytes(StandardCharsets.US_ASCII);
+                CSVDates.decodeEpochDay(ByteBuffer.wrap(bytes), 0, bytes.length);
+                fail("Accepted invalid date bytes '" + invalidDate + "'");
+            }
+            catch (DateTimeException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+}
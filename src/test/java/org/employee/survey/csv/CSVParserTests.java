@@ -2,14 +2,36 @@ package org.employee.survey.csv;
 
 import static org.junit.Assert.*;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
 import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.ColumnarSurveyData;
+import org.employee.survey.parser.LazySurveyData;
+import org.employee.survey.parser.SurveyCSVParser;
 import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.employee.survey.parser.SurveyDataHolder;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 public class CSVParserTests {
 
     @Test
@@ -57,6 +79,277 @@ public class CSVParserTests {
         assertNotNull(surveyData.getDivisions().get(1));
     }
 
+    @Test
+    public void testParse_mappedCSV_matchesStreamed() throws MalformedCSVException {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        Parser streamedParser = CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+        Parser mappedParser = CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED);
+
+        SurveyCSVData streamedData = (SurveyCSVData)streamedParser.parse().get();
+        SurveyCSVData mappedData = (SurveyCSVData)mappedParser.parse().get();
+        assertEquals(streamedData.getDivisions().keySet().toString(), mappedData.getDivisions().keySet().toString());
+        assertEquals(streamedData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).toString(), 
+                mappedData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).toString());
+
+        // Both paths look up every first and last name once, the sample repeats many of them
+        assertEquals(2 * countEmployees(streamedData), streamedData.getParseStatistics().getNamesLookedUp());
+        assertEquals(streamedData.getParseStatistics().getNamesShared(), mappedData.getParseStatistics().getNamesShared());
+        assertTrue(mappedData.getParseStatistics().getNamesShared() > 0);
+        assertTrue(mappedData.getParseStatistics().getEstimatedBytesSaved() > 0);
+    }
+
+    @Test
+    public void testParse_concurrentSortedBuild_sameEmployees() throws MalformedCSVException {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        SurveyCSVData originalData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+        SurveyCSVData sortedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ID, CSVData.SortDirection.ASCENDING).parse().get();
+
+        assertEquals(countEmployees(originalData), countEmployees(sortedData));
+        assertEquals(originalData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).getEmployees().keySet(), 
+                sortedData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).getEmployees().keySet());
+    }
+
+    @Test
+    public void testSortedBy_everyOrder_matchesParse() throws Exception {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        SurveyCSVData originalData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+        for (SurveyCSVData.Employee.SortOrder sortOrder : SurveyCSVData.Employee.SortOrder.values())
+            for (CSVData.SortDirection sortDirection : CSVData.SortDirection.values()) {
+                SurveyCSVData sortedData = originalData.sortedBy(sortOrder, sortDirection);
+                assertEquals(new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile(), sortOrder, sortDirection).parse().get()).write(), new JSONWriter(sortedData).write());
+                assertEquals(originalData.getAgeRollup().getNumberOfEmployees(), sortedData.getAgeRollup().getNumberOfEmployees());
+            }
+
+        try {
+            originalData.sortedBy(SurveyCSVData.Employee.SortOrder.ID, CSVData.SortDirection.ASCENDING).sortedBy(SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+            fail("File order can not be recovered");
+        }
+        catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testParse_mappedChunksOriginalOrder_matchesSequential() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            // Enough rows for several mapped chunks, with employees repeated across chunks
+            StringBuilder content = new StringBuilder("divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n");
+            for (int row = 0; row < 60000; row++)
+                content.append(row % 7).append(',').append(row % 11).append(',').append(row % 5).append(',').append((row * 31) % 20000)
+                    .append(",First").append(row).append(",Last").append(row % 97).append(",19").append(50 + row % 40).append('-').append(1 + row % 12).append("-1\n");
+            Files.write(csvFilePath, content.toString().getBytes(StandardCharsets.UTF_8));
+
+            SurveyCSVData sequentialData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+            SurveyCSVData chunkedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, 
+                    CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get();
+
+            assertEquals(countEmployees(sequentialData), countEmployees(chunkedData));
+            assertEquals(countEmployees(chunkedData), chunkedData.getAgeRollup().getNumberOfEmployees());
+            assertEquals(sequentialData.getAgeRollup().getSumOfBirthdateEpochDays(), chunkedData.getAgeRollup().getSumOfBirthdateEpochDays());
+            assertEquals(sequentialData.getDivisions().keySet().toString(), chunkedData.getDivisions().keySet().toString());
+            sequentialData.getDivisions().forEach((divisionId, division) -> division.getTeams().forEach((teamId, team) -> 
+                assertEquals(team.getManagers().toString(), chunkedData.getDivisions().get(divisionId).getTeams().get(teamId).getManagers().toString())));
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test
+    public void testParse_projectedColumns_namesAbsent() throws Exception {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        SurveyCSVData fullData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+        for (CSVParser.Ingestion ingestion : CSVParser.Ingestion.values()) {
+            SurveyCSVData projectedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, ingestion, EnumSet.noneOf(SurveyCSVData.Column.class)).parse().get();
+
+            assertFalse(projectedData.hasColumn(SurveyCSVData.Column.FIRST_NAME));
+            assertTrue(projectedData.hasColumn(SurveyCSVData.Column.BIRTHDATE));
+            assertEquals(countEmployees(fullData), countEmployees(projectedData));
+            assertEquals(fullData.getAgeRollup().getSumOfBirthdateEpochDays(), projectedData.getAgeRollup().getSumOfBirthdateEpochDays());
+            assertEquals(0, projectedData.getParseStatistics().getNamesLookedUp());
+
+            SurveyCSVData.Employee employee = projectedData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).getEmployees().values().iterator().next();
+            assertNull(employee.getFirstName());
+            assertNull(employee.getLastName());
+            assertEquals(fullData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).getEmployees().get(employee.getId()).getBirthdate(), employee.getBirthdate());
+            assertFalse(new JSONWriter(projectedData).write().contains("Name"));
+            assertFalse(new ObjectMapper().writeValueAsString(employee).contains("Name"));
+            assertFalse(projectedData.findEmployeesWithLastNamePrefix("").hasNext());
+        }
+
+        SurveyCSVData sortedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME,
+                CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED, EnumSet.noneOf(SurveyCSVData.Column.class)).parse().get();
+        assertTrue(sortedData.hasColumn(SurveyCSVData.Column.LAST_NAME));
+        assertFalse(sortedData.hasColumn(SurveyCSVData.Column.FIRST_NAME));
+    }
+
+    @Test
+    public void testParse_columnarCSV_matchesObjects() throws MalformedCSVException {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        SurveyCSVData objectData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+        CSVData csvData = CSVParser.createColumnarSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING).parse().get();
+        assertTrue(csvData instanceof ColumnarSurveyData);
+        ColumnarSurveyData columnarData = (ColumnarSurveyData)csvData;
+
+        assertEquals(countEmployees(objectData), columnarData.getEmployeeCount());
+        assertEquals(objectData.getDivisions().keySet().toString(), columnarData.getDivisions().keySet().toString());
+        assertEquals(objectData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).toString(), 
+                columnarData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).toString());
+    }
+
+    @Test
+    public void testParse_idIndexes_matchTraversal() throws MalformedCSVException {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        for (SurveyCSVData.Employee.SortOrder sortOrder : new SurveyCSVData.Employee.SortOrder[] { SurveyCSVData.Employee.SortOrder.ORIGINAL, SurveyCSVData.Employee.SortOrder.ID }) {
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), sortOrder, CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get();
+
+            long managersWithIdTwo = surveyData.getDivisions().values().stream()
+                    .flatMap(d -> d.getTeams().values().stream())
+                    .filter(t -> t.getManagers().containsKey(2)).count();
+            assertTrue(managersWithIdTwo > 1);
+            assertEquals(managersWithIdTwo, surveyData.getManagersWithId(2).size());
+
+            long teamsWithIdFive = surveyData.getDivisions().values().stream()
+                    .filter(d -> d.getTeams().containsKey(5)).count();
+            assertEquals(teamsWithIdFive, surveyData.getTeamsWithId(5).size());
+            assertTrue(surveyData.getTeamsWithId(-1).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSecondaryIndexes_birthdateRangeAndLastNamePrefix_matchFilter() throws MalformedCSVException {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+        SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING).parse().get();
+        LocalDate first = LocalDate.of(1980, 1, 1);
+        LocalDate last = LocalDate.of(1985, 12, 31);
+
+        SurveyCSVData.Division division = surveyData.getDivisions().get(1);
+        List<SurveyCSVData.Employee> bornBetween = toList(division.findEmployeesBornBetween(first, last));
+        List<SurveyCSVData.Employee> expected = division.getTeams().values().stream()
+                .flatMap(t -> t.getManagers().values().stream())
+                .flatMap(m -> m.getEmployees().values().stream())
+                .filter(e -> false == e.getBirthdateDateType().isBefore(first) && false == e.getBirthdateDateType().isAfter(last))
+                .collect(Collectors.toList());
+        assertFalse(expected.isEmpty());
+        assertEquals(new HashSet<>(expected), new HashSet<>(bornBetween));
+        assertEquals(expected.size(), bornBetween.size());
+        for (int i = 1; i < bornBetween.size(); i++)
+            assertTrue(bornBetween.get(i - 1).getBirthdateEpochDay() <= bornBetween.get(i).getBirthdateEpochDay());
+        assertFalse(surveyData.findEmployeesBornBetween(last, first).hasNext());
+
+        SurveyCSVData.Manager manager = surveyData.getManagersWithId(2).get(0);
+        String prefix = manager.getEmployees().values().iterator().next().getLastName().substring(0, 2);
+        List<SurveyCSVData.Employee> withPrefix = toList(manager.findEmployeesWithLastNamePrefix(prefix));
+        assertEquals(manager.getEmployees().values().stream().filter(e -> e.getLastName().startsWith(prefix)).count(), withPrefix.size());
+        assertEquals(countEmployees(surveyData), toList(surveyData.findEmployeesWithLastNamePrefix("")).size());
+        assertFalse(surveyData.findEmployeesWithLastNamePrefix("\uffff").hasNext());
+
+        int before = withPrefix.size();
+        int beforeInCompany = toList(surveyData.findEmployeesWithLastNamePrefix(prefix)).size();
+        manager.addEmployee(-1, manager.createEmployee(-1, "Stuart", prefix + "Added", "1990-1-1"));
+        assertEquals(before + 1, toList(manager.findEmployeesWithLastNamePrefix(prefix)).size());
+        assertEquals(beforeInCompany + 1, toList(surveyData.findEmployeesWithLastNamePrefix(prefix)).size());
+    }
+
+    @Test
+    public void testSurveyDataHolder_frozenVersions_swappedOnReload() throws Exception {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+        try (SurveyDataHolder holder = new SurveyDataHolder(CSVParser.createSurveyParser(csvFilePath.toFile()))) {
+            SurveyCSVData first = holder.get();
+            assertTrue(first.isFrozen());
+            assertEquals(1, holder.getVersion().getNumber());
+
+            SurveyCSVData.Manager manager = first.getDivisions().get(1).getTeams().get(5).getManagers().get(1);
+            try {
+                manager.addEmployee(-1, manager.createEmployee(-1, "Stuart", "Mackintosh", "1990-1-1"));
+                fail("Frozen manager changed");
+            }
+            catch (IllegalStateException e) {
+                // NOTE - Expected
+            }
+            try {
+                new SurveyCSVData(SurveyCSVData.Employee.SortOrder.ORIGINAL).addDivision(1, first.getDivisions().get(1));
+                fail("Frozen division moved");
+            }
+            catch (IllegalStateException e) {
+                // NOTE - Expected
+            }
+
+            long employees = first.getAgeRollup().getNumberOfEmployees();
+            SurveyDataHolder.Version second = holder.reload().get();
+            assertEquals(2, second.getNumber());
+            assertSame(second.getData(), holder.get());
+            assertNotSame(first, holder.get());
+            assertEquals(employees, first.getAgeRollup().getNumberOfEmployees());
+            assertEquals(employees, holder.get().getAgeRollup().getNumberOfEmployees());
+        }
+    }
+
+    @Test
+    public void testParse_lazy_decodedDivisionsMatchFullParse() throws Exception {
+
+        Path csvFilePath = Paths.get("data", "data.csv");
+
+        for (SurveyCSVData.Employee.SortOrder sortOrder : new SurveyCSVData.Employee.SortOrder[] { SurveyCSVData.Employee.SortOrder.ORIGINAL, SurveyCSVData.Employee.SortOrder.LASTNAME }) {
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile(), sortOrder, CSVData.SortDirection.DESCENDING).parse().get();
+            CSVData csvData = CSVParser.createLazySurveyParser(csvFilePath.toFile(), sortOrder, CSVData.SortDirection.DESCENDING, 1L << 20).parse().get();
+            assertTrue(csvData instanceof LazySurveyData);
+            LazySurveyData lazyData = (LazySurveyData)csvData;
+
+            assertEquals(new JSONWriter(surveyData).write(), new JSONWriter(lazyData).write());
+            assertEquals(surveyData.getDivisions().size(), lazyData.getDivisionCount());
+
+            long hits = lazyData.getCache().getHits();
+            assertSame(lazyData.getDivision(1).get(), lazyData.getDivision(1).get());
+            assertEquals(hits + 2, lazyData.getCache().getHits());
+            assertFalse(lazyData.getDivision(-1).isPresent());
+
+            SurveyCSVData.Employee employee = surveyData.getDivisions().get(1).getTeams().get(5).getManagers().get(1).getEmployees().values().iterator().next();
+            SurveyCSVData.Employee decoded = lazyData.getEmployee(1, 5, 1, employee.getId()).get();
+            assertEquals(employee.toString(), decoded.toString());
+            assertFalse(lazyData.getEmployee(1, 5, 1, -1).isPresent());
+        }
+    }
+
+    @Test
+    public void testOrderedEmployees_tiesAndDates_cachedUntilChanged() {
+
+        SurveyCSVData.Division division = new SurveyCSVData.Division(1, SurveyCSVData.Employee.SortOrder.BIRTHDATE);
+        SurveyCSVData.Team team = division.createTeam(1);
+        SurveyCSVData.Manager manager = team.createManager(1, CSVData.SortDirection.ASCENDING);
+        manager.addEmployee(1, manager.createEmployee(1, "Stuart", "Mackintosh", "1990-10-1"));
+        manager.addEmployee(2, manager.createEmployee(2, "Stuart", "Mackintosh", "1990-9-30"));
+        manager.addEmployee(3, manager.createEmployee(3, "Stuart", "Mackintosh", "1990-9-30"));
+
+        Map<Integer, SurveyCSVData.Employee> orderedEmployees = manager.getOrderedEmployees();
+        assertArrayEquals(new Integer[] {2, 3, 1}, orderedEmployees.keySet().toArray());
+        assertSame(orderedEmployees, manager.getOrderedEmployees());
+
+        manager.addEmployee(4, manager.createEmployee(4, "Stuart", "Mackintosh", "1989-12-31"));
+        assertArrayEquals(new Integer[] {4, 2, 3, 1}, manager.getOrderedEmployees().keySet().toArray());
+
+        SurveyCSVData.Manager byLastName = new SurveyCSVData.Division(2, SurveyCSVData.Employee.SortOrder.LASTNAME).createTeam(1).createManager(1, CSVData.SortDirection.DESCENDING);
+        byLastName.addEmployee(1, byLastName.createEmployee(1, "Stuart", "Mackintosh", "1990-1-1"));
+        byLastName.addEmployee(2, byLastName.createEmployee(2, "Stuart", "Mackintosh", "1990-1-1"));
+        assertEquals(2, byLastName.getOrderedEmployees().size());
+    }
+
     @Test
     public void testParse_badCSV_failure() {
 
@@ -92,4 +385,235 @@ public class CSVParserTests {
 		}  
         assertNull(csvData.orElse(null));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseAppended_newRowsOnly_success() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            String header = "divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n";
+            byte[] original = (header + "1,1,1,1,Stuart,Mackintosh,1980-1-1\n1,1,1,2,Stuart,Smith,1990-1-1\n").getBytes(StandardCharsets.UTF_8);
+            Files.write(csvFilePath, original);
+
+            for (CSVParser.Ingestion ingestion : CSVParser.Ingestion.values()) {
+                SurveyCSVParser parser = new SurveyCSVParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.BIRTHDATE, CSVData.SortDirection.ASCENDING, ingestion);
+                SurveyCSVData surveyData = (SurveyCSVData)parser.parse().get();
+                assertEquals(Files.size(csvFilePath), surveyData.getConsumedBytes());
+                assertEquals(0, parser.parseAppended(surveyData));
+
+                SurveyCSVData.Manager manager = surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1);
+                assertArrayEquals(new Integer[] {1, 2}, manager.getOrderedEmployees().keySet().toArray());
+                long revision = surveyData.getRevision();
+                SurveyAnalyzer analysis = new SurveyAnalyzer(surveyData);
+                LocalDate referenceDate = LocalDate.of(2020, 1, 1);
+                Period averageAgeBefore = analysis.getAverageAge(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate);
+
+                // One complete new row, one still being written
+                Files.write(csvFilePath, "1,1,1,3,Stuart,Jones,1970-1-1\n2,4,3,4,Stuart,Br".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                long appended = parser.parseAppended(surveyData);
+                assertEquals("1,1,1,3,Stuart,Jones,1970-1-1\n".length(), appended);
+                assertEquals(3, surveyData.getAgeRollup().getNumberOfEmployees());
+                assertArrayEquals(new Integer[] {3, 1, 2}, manager.getOrderedEmployees().keySet().toArray());
+                assertTrue(revision != surveyData.getRevision());
+                assertTrue(analysis.getAverageAge(AgeCalculator.Scope.COMPANY, Optional.empty(), referenceDate).toTotalMonths() > averageAgeBefore.toTotalMonths());
+
+                Files.write(csvFilePath, "own,1960-1-1\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                parser.parseAppended(surveyData);
+                assertEquals(Files.size(csvFilePath), surveyData.getConsumedBytes());
+                assertEquals("Brown", surveyData.getManagersWithId(3).get(0).getEmployees().get(4).getLastName());
+                assertEquals(1, surveyData.getTeamsWithId(4).size());
+                assertEquals(4, surveyData.getAgeRollup().getNumberOfEmployees());
+
+                Files.write(csvFilePath, original);
+            }
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test
+    public void testParse_unterminatedLastLine_parsedAndReadAgainOnAppend() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            String header = "divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n";
+            String complete = header + "1,1,1,1,Stuart,Mackintosh,1980-1-1\n";
+            for (CSVParser.Ingestion ingestion : CSVParser.Ingestion.values()) {
+                Files.write(csvFilePath, (complete + "1,1,1,2,Stuart,Smith,1990-1-1").getBytes(StandardCharsets.UTF_8));
+                SurveyCSVParser parser = new SurveyCSVParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING, ingestion);
+                SurveyCSVData surveyData = (SurveyCSVData)parser.parse().get();
+                assertEquals(2, surveyData.getAgeRollup().getNumberOfEmployees());
+                assertEquals("Smith", surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1).getEmployees().get(2).getLastName());
+                assertEquals(complete.length(), surveyData.getConsumedBytes());
+
+                // The last line may have been still being written, it is read again and its employee is not added twice
+                String appended = "1,1,1,2,Stuart,Smith,1990-1-1\n1,1,1,3,Stuart,Jones,1970-1-1\n";
+                Files.write(csvFilePath, "\n1,1,1,3,Stuart,Jones,1970-1-1\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                assertEquals(appended.length(), parser.parseAppended(surveyData));
+                assertEquals(3, surveyData.getAgeRollup().getNumberOfEmployees());
+            }
+
+            // Every parser reads the last line the same way
+            Files.write(csvFilePath, (complete + "1,1,1,2,Stuart,Smith,1990-1-1").getBytes(StandardCharsets.UTF_8));
+            assertEquals(2, ((ColumnarSurveyData)CSVParser.createColumnarSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING).parse().get()).getEmployeeCount());
+            assertEquals(2, ((LazySurveyData)CSVParser.createLazySurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, 0).parse().get()).getRowCount());
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test
+    public void testParse_emptyFields_sameRowsEveryIngestion() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            Files.write(csvFilePath, ("divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n1,1,1,1,Stuart,Mackintosh,1980-1-1\n"
+                    + "1,1,1,2,,Smith,1990-1-1\n1,,1,1,3,Stuart,Jones,1970-1-1\n,1,1,1,4,Stuart,Brown,1960-1-1,\n").getBytes(StandardCharsets.UTF_8));
+
+            // Empty fields are skipped, a row missing a name has too few fields and one with a field too many is read without the empty one
+            String streamedJson = new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get()).write();
+            assertFalse(streamedJson.contains("Smith"));
+            assertTrue(streamedJson.contains("Jones"));
+            assertEquals(streamedJson, new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get()).write());
+            assertEquals(streamedJson, new JSONWriter(CSVParser.createColumnarSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING).parse().get()).write());
+            assertEquals(streamedJson, new JSONWriter(CSVParser.createLazySurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, 0).parse().get()).write());
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test
+    public void testParse_lazyBadRow_failureWithCause() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            Files.write(csvFilePath, "divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n1,x,1,1,Stuart,Mackintosh,1980-1-1\n".getBytes(StandardCharsets.UTF_8));
+            CSVParser.createLazySurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING, 0).parse();
+            fail("Bad row accepted");
+        }
+        catch (MalformedCSVException e) {
+            assertEquals("FAILED to parse CSV file", e.getMessage());
+            assertTrue(e.getCause() instanceof NumberFormatException);
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test(expected = MalformedCSVException.class)
+    public void testParseAppended_shrunkFile_failure() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            String header = "divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n";
+            Files.write(csvFilePath, (header + "1,1,1,1,Stuart,Mackintosh,1980-1-1\n").getBytes(StandardCharsets.UTF_8));
+            SurveyCSVParser parser = new SurveyCSVParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+            SurveyCSVData surveyData = (SurveyCSVData)parser.parse().get();
+
+            Files.write(csvFilePath, header.getBytes(StandardCharsets.UTF_8));
+            parser.parseAppended(surveyData);
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test
+    public void testParse_paddedBirthdates_keptAsRead() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        Path snapshotPath = Paths.get(csvFilePath + ".snapshot");
+        try {
+            Files.write(csvFilePath, ("divisionId,teamId,managerId,employeeId,firstName,lastName,birthdate\n1,1,1,1,Stuart,Mackintosh,1990-07-05\n"
+                    + "1,1,1,2,Stuart,Smith,1980-1-1\n1,1,2,3,Stuart,Jones,0970-1-01\n").getBytes(StandardCharsets.UTF_8));
+
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+            assertEquals("1990-07-05", surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1).getEmployees().get(1).getBirthdate());
+            assertEquals(LocalDate.of(1990, 7, 5), surveyData.getDivisions().get(1).getTeams().get(1).getManagers().get(1).getEmployees().get(1).getBirthdateDateType());
+            String json = new JSONWriter(surveyData).write();
+            assertTrue(json.contains("\"1990-07-05\"") && json.contains("\"1980-1-1\"") && json.contains("\"0970-1-01\""));
+
+            // Every ingestion, and data loaded from a snapshot, gives the same text back
+            assertEquals(json, new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, CSVParser.Ingestion.MAPPED).parse().get()).write());
+            assertEquals(json, new JSONWriter(CSVParser.createColumnarSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING).parse().get()).write());
+            assertEquals(json, new JSONWriter(CSVParser.createLazySurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL,
+                    CSVData.SortDirection.ASCENDING, 0).parse().get()).write());
+            Parser snapshotParser = CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), snapshotPath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+            snapshotParser.parse();
+            SurveyCSVData snapshotData = (SurveyCSVData)snapshotParser.parse().get();
+            assertEquals(0, snapshotData.getParseStatistics().getNamesLookedUp());
+            assertEquals(json, new JSONWriter(snapshotData).write());
+        }
+        finally {
+            Files.delete(csvFilePath);
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+
+    @Test
+    public void testParse_snapshot_loadedUnlessStaleOrCorrupt() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        Path snapshotPath = Paths.get(csvFilePath + ".snapshot");
+        try {
+            Files.copy(Paths.get("data", "data.csv"), csvFilePath, StandardCopyOption.REPLACE_EXISTING);
+            SurveyCSVData parsedData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+            Parser snapshotParser = CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), snapshotPath.toFile(), SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING);
+
+            // First parse reads the CSV and writes the snapshot, the second one loads it
+            assertTrue(((SurveyCSVData)snapshotParser.parse().get()).getParseStatistics().getNamesLookedUp() > 0);
+            assertTrue(Files.exists(snapshotPath));
+            SurveyCSVData snapshotData = (SurveyCSVData)snapshotParser.parse().get();
+            assertEquals(0, snapshotData.getParseStatistics().getNamesLookedUp());
+            assertEquals(new JSONWriter(parsedData).write(), new JSONWriter(snapshotData).write());
+            assertEquals(parsedData.getAgeRollup().getSumOfBirthdateEpochDays(), snapshotData.getAgeRollup().getSumOfBirthdateEpochDays());
+            assertEquals(parsedData.getConsumedBytes(), snapshotData.getConsumedBytes());
+
+            // An ORIGINAL snapshot also serves other orders
+            SurveyCSVData sortedData = (SurveyCSVData)CSVParser.createSnapshotSurveyParser(csvFilePath.toFile(), snapshotPath.toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME, CSVData.SortDirection.DESCENDING).parse().get();
+            assertEquals(0, sortedData.getParseStatistics().getNamesLookedUp());
+            assertEquals(new JSONWriter(CSVParser.createSurveyParser(csvFilePath.toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME, CSVData.SortDirection.DESCENDING).parse().get()).write(),
+                    new JSONWriter(sortedData).write());
+
+            // A corrupted snapshot falls back to the CSV and is rewritten
+            byte[] snapshot = Files.readAllBytes(snapshotPath);
+            snapshot[snapshot.length / 2] ^= 1;
+            Files.write(snapshotPath, snapshot);
+            assertTrue(((SurveyCSVData)snapshotParser.parse().get()).getParseStatistics().getNamesLookedUp() > 0);
+            assertEquals(0, ((SurveyCSVData)snapshotParser.parse().get()).getParseStatistics().getNamesLookedUp());
+
+            // A changed CSV makes the snapshot stale
+            Files.write(csvFilePath, "1,1,1,100000,Stuart,Mackintosh,1980-1-1\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            SurveyCSVData changedData = (SurveyCSVData)snapshotParser.parse().get();
+            assertTrue(changedData.getParseStatistics().getNamesLookedUp() > 0);
+            assertEquals(parsedData.getAgeRollup().getNumberOfEmployees() + 1, changedData.getAgeRollup().getNumberOfEmployees());
+        }
+        finally {
+            Files.deleteIfExists(snapshotPath);
+            Files.delete(csvFilePath);
+        }
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static long countEmployees(SurveyCSVData surveyData) {
+        return surveyData.getDivisions().values().stream()
+                .flatMap(d -> d.getTeams().values().stream())
+                .flatMap(t -> t.getManagers().values().stream())
+                .mapToLong(m -> m.getEmployees().size()).sum();
+    }
+}
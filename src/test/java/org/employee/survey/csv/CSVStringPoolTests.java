@@ -0,0 +1,45 @@
+package org.employee.survey.csv;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CSVStringPoolTests {
+
+    @Test
+    public void testIntern_repeatedValues_shared() {
+
+        CSVStringPool pool = new CSVStringPool(16);
+        String first = pool.intern(new String("Mackintosh"));
+        assertSame(first, pool.intern(new String("Mackintosh")));
+
+        ByteBuffer bytes = ByteBuffer.wrap("Stuart,Mackintosh,Zo\u00eb,Zo\u00eb".getBytes(StandardCharsets.UTF_8));
+        assertSame(first, pool.intern(bytes, 7, 17));
+        String nonAscii = pool.intern(bytes, 18, 22);
+        assertEquals("Zo\u00eb", nonAscii);
+        assertSame(nonAscii, pool.intern(bytes, 23, 27));
+        assertEquals(0, bytes.position());
+
+        assertEquals(5, pool.getLookups());
+        assertEquals(3, pool.getHits());
+        assertEquals(2, pool.getPooledStrings());
+        assertTrue(pool.getEstimatedBytesSaved() > 0);
+    }
+
+    @Test
+    public void testIntern_poolFull_valuesStillReturned() {
+
+        CSVStringPool pool = new CSVStringPool(2);
+        pool.intern("a");
+        pool.intern("b");
+        String c = new String("c");
+        assertSame(c, pool.intern(c));
+        assertNotSame(c, pool.intern(new String("c")));
+        assertEquals("c", pool.intern(ByteBuffer.wrap(new byte[] {'c'}), 0, 1));
+        assertEquals(2, pool.getPooledStrings());
+        assertEquals(0, pool.getHits());
+    }
+}
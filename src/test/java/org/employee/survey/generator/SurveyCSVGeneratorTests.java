@@ -0,0 +1,65 @@
+package org.employee.survey.generator;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.exception.MalformedCSVException;
+import org.employee.survey.parser.ColumnarSurveyData;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.Test;
+
+public class SurveyCSVGeneratorTests {
+
+    @Test
+    public void testWrite_sameSeed_sameRows() throws Exception {
+
+        SurveyCSVGenerator.Builder builder = SurveyCSVGenerator.builder().rows(2000).fanOut(3, 4, 5).names(50, 20, 1.2).faults(0.05, 0.05);
+        StringWriter first = new StringWriter(), second = new StringWriter(), other = new StringWriter();
+        SurveyCSVGenerator.Summary summary = builder.seed(7).build().write(first);
+        builder.seed(7).build().write(second);
+        builder.seed(8).build().write(other);
+
+        assertEquals(first.toString(), second.toString());
+        assertFalse(first.toString().equals(other.toString()));
+        assertEquals(2000, summary.getRows());
+        assertTrue(summary.getDuplicateRows() > 0 && summary.getMalformedRows() > 0);
+        assertEquals(2001, first.toString().split("\n").length);
+    }
+
+    @Test
+    public void testParse_duplicateRows_keptOnce() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            SurveyCSVGenerator.Summary summary = SurveyCSVGenerator.builder().seed(3).rows(5000).fanOut(2, 3, 4).faults(0.1, 0).build().write(csvFilePath);
+            assertTrue(summary.getDuplicateRows() > 0);
+
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(csvFilePath.toFile()).parse().get();
+            assertEquals(summary.getEmployees(), surveyData.getAgeRollup().getNumberOfEmployees());
+            ColumnarSurveyData columnarData = (ColumnarSurveyData)CSVParser.createColumnarSurveyParser(csvFilePath.toFile(),
+                    SurveyCSVData.Employee.SortOrder.ORIGINAL, CSVData.SortDirection.ASCENDING).parse().get();
+            assertEquals(summary.getEmployees(), columnarData.getEmployeeCount());
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+
+    @Test(expected = MalformedCSVException.class)
+    public void testParse_malformedRows_failure() throws Exception {
+
+        Path csvFilePath = Files.createTempFile("survey", ".csv");
+        try {
+            SurveyCSVGenerator.builder().seed(3).rows(5000).faults(0, 0.01).build().write(csvFilePath);
+            CSVParser.createSurveyParser(csvFilePath.toFile()).parse();
+        }
+        finally {
+            Files.delete(csvFilePath);
+        }
+    }
+}
@@ -2,7 +2,9 @@ package org.employee.survey.json;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
@@ -11,6 +13,7 @@ import org.employee.survey.parser.SurveyCSVParser;
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class JSONWriterTests {
 
@@ -37,6 +40,21 @@ public class JSONWriterTests {
         } 
     }
 
+    @Test
+    public void testWriteStream_success() throws IOException {
+
+        SurveyCSVParser.SurveyCSVData surveyData = buildSampleData();
+        JSONWriter writerOfJson = new JSONWriter(surveyData);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writerOfJson.write(output);
+        output.write('!');            // NOTE - Stream must be left open for the caller
+
+        String beanMappedJson = new ObjectMapper().writeValueAsString(surveyData);
+        assertEquals(beanMappedJson + "!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(beanMappedJson, writerOfJson.write());
+    }
+
     private SurveyCSVParser.SurveyCSVData buildSampleData() {
 
         SurveyCSVParser.SurveyCSVData surveyData = new SurveyCSVParser.SurveyCSVData(SurveyCSVParser.SurveyCSVData.Employee.SortOrder.ORIGINAL);
@@ -0,0 +1,114 @@
+package org.employee.survey.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.management.ObjectName;
+
+import org.employee.survey.analysis.AgeCalculator;
+import org.employee.survey.analysis.SurveyAnalyzer;
+import org.employee.survey.csv.CSVData;
+import org.employee.survey.csv.CSVParser;
+import org.employee.survey.json.JSONWriter;
+import org.employee.survey.parser.LazySurveyData;
+import org.employee.survey.parser.SurveyCSVParser.SurveyCSVData;
+import org.junit.Test;
+
+public class SurveyMetricsTests {
+
+    @Test
+    public void testHistogram_percentiles_success() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        for (long nanos = 1; nanos <= 1000; nanos++)
+            histogram.record(nanos);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getTotalNanos());
+        long median = histogram.getPercentileNanos(50);
+        assertTrue(median >= 500 && median < 1000);             // NOTE - Within a factor of two
+        assertEquals(1000, histogram.getPercentileNanos(99));
+        assertEquals(1, histogram.getPercentileNanos(0));
+    }
+
+    @Test
+    public void testPipeline_stagesCountersAndQueries_recorded() throws Exception {
+
+        SurveyMetrics metrics = new SurveyMetrics();
+        SurveyMetrics.Timer outer = metrics.start(SurveyMetrics.Stage.PARSE);
+        SurveyMetrics.Timer inner = metrics.start(SurveyMetrics.Stage.SORT);
+        assertEquals(-1, metrics.allocationMark());         // NOTE - Covered by the open timers
+        assertNotNull(new byte[1 << 16]);
+        inner.close();
+        outer.close();
+        assertEquals(1, metrics.getStageInvocations(SurveyMetrics.Stage.PARSE));
+        assertTrue(metrics.getStageNanos(SurveyMetrics.Stage.PARSE) >= metrics.getStageNanos(SurveyMetrics.Stage.SORT));
+        assertTrue(metrics.getStageAllocatedBytes(SurveyMetrics.Stage.SORT) >= 1 << 16);
+        long threadBytes = metrics.getAllocatedBytesByThread().get(Thread.currentThread().getName());
+        assertEquals(metrics.getStageAllocatedBytes(SurveyMetrics.Stage.PARSE), threadBytes);      // NOTE - Inner timer not counted twice
+
+        metrics.reset();
+        assertEquals(0, metrics.getStageInvocations(SurveyMetrics.Stage.PARSE));
+        assertTrue(metrics.getAllocatedBytesByThread().isEmpty());
+    }
+
+    @Test
+    public void testGlobal_parseAnalyzeWrite_reported() throws Exception {
+
+        SurveyMetrics metrics = SurveyMetrics.global();
+
+        // Columnar and lazy scans count the same bytes, rows the lazy data decodes again on access are not counted
+        metrics.reset();
+        CSVParser.createColumnarSurveyParser(Paths.get("data", "data.csv").toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME, CSVData.SortDirection.ASCENDING).parse().get();
+        assertEquals(dataBytes(), metrics.getCounter(SurveyMetrics.Counter.BYTES_PARSED));
+        metrics.reset();
+        LazySurveyData lazyData = (LazySurveyData)CSVParser.createLazySurveyParser(Paths.get("data", "data.csv").toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME,
+                CSVData.SortDirection.ASCENDING, 0).parse().get();
+        assertTrue(lazyData.getDivision(1).isPresent());
+        assertTrue(lazyData.getDivision(1).isPresent());
+        assertEquals(dataBytes(), metrics.getCounter(SurveyMetrics.Counter.BYTES_PARSED));
+
+        for (CSVParser.Ingestion ingestion : CSVParser.Ingestion.values()) {
+            metrics.reset();
+            SurveyCSVData surveyData = (SurveyCSVData)CSVParser.createSurveyParser(Paths.get("data", "data.csv").toFile(), SurveyCSVData.Employee.SortOrder.LASTNAME,
+                    CSVData.SortDirection.ASCENDING, ingestion).parse().get();
+            new SurveyAnalyzer(surveyData).getAverageAge(AgeCalculator.Scope.TEAM, Optional.of(12), LocalDate.of(2020, 1, 1));
+            new SurveyAnalyzer(surveyData).getAllAverageAges(LocalDate.of(2020, 1, 1));
+            new JSONWriter(surveyData).write();
+
+            long rows = metrics.getCounter(SurveyMetrics.Counter.ROWS_PARSED);
+            assertEquals(surveyData.getAgeRollup().getNumberOfEmployees(), rows - metrics.getCounter(SurveyMetrics.Counter.DUPLICATE_ROWS));
+            assertEquals(rows, metrics.getStageInvocations(SurveyMetrics.Stage.TOKENIZE));
+            assertEquals(dataBytes(), metrics.getCounter(SurveyMetrics.Counter.BYTES_PARSED));
+            assertEquals(1, metrics.getStageInvocations(SurveyMetrics.Stage.PARSE));
+            assertTrue(metrics.getStageInvocations(SurveyMetrics.Stage.SORT) > 0);
+            assertEquals(1, metrics.getStageInvocations(SurveyMetrics.Stage.JSON_SERIALIZATION));
+            assertEquals(2, metrics.getStageInvocations(SurveyMetrics.Stage.ANALYSIS));
+            assertEquals(1, metrics.getQueryLatency("averageAge.TEAM").getCount());
+            assertEquals(1, metrics.getQueryLatency("allAverageAges").getCount());
+        }
+
+        SurveyMetrics.registerGlobal();
+        SurveyMetrics.registerGlobal();
+        Map<String, Long> flattened = metrics.getMetrics();
+        assertEquals(Long.valueOf(metrics.getCounter(SurveyMetrics.Counter.ROWS_PARSED)), flattened.get("counter.ROWS_PARSED"));
+        assertEquals(Long.valueOf(1), flattened.get("query.allAverageAges.count"));
+        String scraped = (String)ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(SurveyMetrics.OBJECT_NAME), "SummaryJSON");
+        assertTrue(scraped.contains("\"JSON_SERIALIZATION\""));
+    }
+
+    private static long dataBytes() throws Exception {
+        byte[] csv = Files.readAllBytes(Paths.get("data", "data.csv"));
+        int header = 0;
+        while ('\n' != csv[header++]);
+        return csv.length - header;
+    }
+}